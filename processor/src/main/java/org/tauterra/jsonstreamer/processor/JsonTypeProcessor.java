@@ -0,0 +1,537 @@
+/*
+ * Copyright 2018 Nicholas Folse <https://github.com/NF1198>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tauterra.jsonstreamer.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import org.tauterra.jsonstreamer.JsonField;
+import org.tauterra.jsonstreamer.JsonType;
+
+/**
+ * Generates a parser and a streamer for every {@link JsonType} class.
+ *
+ * The generated class dispatches keys with a switch on their byte length
+ * followed by raw byte comparisons, and reads and writes fields directly, so
+ * every call site is monomorphic and nothing is set up at run time.
+ *
+ * @author Nicholas Folse <https://github.com/NF1198>
+ */
+@SupportedAnnotationTypes("org.tauterra.jsonstreamer.JsonType")
+public class JsonTypeProcessor extends AbstractProcessor {
+
+    private enum Kind {
+        INT("int", "Integer", false), LONG("long", "Long", false), SHORT("short", "Short", false), BYTE("byte", "Byte", false),
+        DOUBLE("double", "Double", true), FLOAT("float", "Float", true), BOOLEAN("boolean", "Boolean", false),
+        STRING(null, "String", false), OBJECT(null, null, false);
+
+        final String primitive;
+        final String boxed;
+        final boolean floating;
+
+        Kind(String primitive, String boxed, boolean floating) {
+            this.primitive = primitive;
+            this.boxed = boxed;
+            this.floating = floating;
+        }
+    }
+
+    private static final class Field {
+
+        String name;
+        String key;
+        Kind kind;
+        boolean nullable;
+        String generated;
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(JsonType.class)) {
+            if (element.getKind() != ElementKind.CLASS) {
+                error(element, "@JsonType applies to classes only");
+                continue;
+            }
+            TypeElement type = (TypeElement) element;
+            List<Field> fields = fields(type);
+            if (fields != null) {
+                try {
+                    write(type, fields);
+                } catch (IOException e) {
+                    error(type, "Cannot write " + generatedName(type) + ": " + e.getMessage());
+                }
+            }
+        }
+        return true;
+    }
+
+    private List<Field> fields(TypeElement type) {
+        boolean valid = true;
+        if (type.getModifiers().contains(Modifier.PRIVATE) || type.getModifiers().contains(Modifier.ABSTRACT)
+                || (type.getNestingKind().isNested() && !type.getModifiers().contains(Modifier.STATIC))) {
+            error(type, "@JsonType classes must be concrete, not private, and static if nested");
+            valid = false;
+        }
+        boolean constructor = false;
+        for (ExecutableElement ctor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            constructor |= ctor.getParameters().isEmpty() && !ctor.getModifiers().contains(Modifier.PRIVATE);
+        }
+        if (!constructor) {
+            error(type, "@JsonType classes need a no-argument constructor that is not private");
+            valid = false;
+        }
+        List<Field> fields = new ArrayList<>();
+        for (VariableElement variable : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+            Set<Modifier> modifiers = variable.getModifiers();
+            JsonField annotation = variable.getAnnotation(JsonField.class);
+            if (modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.TRANSIENT)
+                    || (annotation != null && annotation.ignore())) {
+                continue;
+            }
+            if (modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.FINAL)) {
+                error(variable, "Mapped fields must be neither private nor final");
+                valid = false;
+                continue;
+            }
+            Field field = new Field();
+            field.name = variable.getSimpleName().toString();
+            field.key = annotation != null && !annotation.value().isEmpty() ? annotation.value() : field.name;
+            if (!classify(variable.asType(), field)) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                        "Field of type " + variable.asType() + " is not mapped", variable);
+                continue;
+            }
+            fields.add(field);
+        }
+        return valid ? fields : null;
+    }
+
+    private boolean classify(TypeMirror type, Field field) {
+        if (type.getKind().isPrimitive()) {
+            for (Kind kind : Kind.values()) {
+                if (type.toString().equals(kind.primitive)) {
+                    field.kind = kind;
+                    return true;
+                }
+            }
+            return false;
+        } else if (!(type instanceof DeclaredType)) {
+            return false;
+        }
+        TypeElement element = (TypeElement) ((DeclaredType) type).asElement();
+        field.nullable = true;
+        if (element.getAnnotation(JsonType.class) != null) {
+            field.kind = Kind.OBJECT;
+            field.generated = packageName(element) + generatedName(element);
+            return true;
+        }
+        String name = element.getQualifiedName().toString();
+        for (Kind kind : Kind.values()) {
+            if (kind.boxed != null && name.equals("java.lang." + kind.boxed)) {
+                field.kind = kind;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String packageName(TypeElement type) {
+        Element element = type;
+        while (!(element instanceof PackageElement)) {
+            element = element.getEnclosingElement();
+        }
+        PackageElement pkg = (PackageElement) element;
+        return pkg.isUnnamed() ? "" : pkg.getQualifiedName() + ".";
+    }
+
+    private static String generatedName(TypeElement type) {
+        String name = type.getSimpleName().toString();
+        for (Element outer = type.getEnclosingElement(); outer instanceof TypeElement; outer = outer.getEnclosingElement()) {
+            name = outer.getSimpleName() + "_" + name;
+        }
+        return name + "Json";
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+    private void write(TypeElement type, List<Field> fields) throws IOException {
+        String pkg = packageName(type);
+        String name = generatedName(type);
+        String target = type.getQualifiedName().toString();
+        Source src = new Source();
+        if (!pkg.isEmpty()) {
+            src.line("package " + pkg.substring(0, pkg.length() - 1) + ";").line();
+        }
+        src.line("import java.io.ByteArrayOutputStream;")
+                .line("import java.io.IOException;")
+                .line("import java.io.OutputStream;")
+                .line("import java.io.UncheckedIOException;")
+                .line("import java.nio.charset.StandardCharsets;")
+                .line("import java.util.Arrays;")
+                .line("import java.util.function.Consumer;")
+                .line("import org.tauterra.jsonstreamer.JsonObjectBuilder;")
+                .line("import org.tauterra.jsonstreamer.JsonObjectBuilder.JsonObjectParserException;")
+                .line("import org.tauterra.jsonstreamer.JsonParser;")
+                .line("import org.tauterra.jsonstreamer.JsonParser.Event;")
+                .line("import org.tauterra.jsonstreamer.JsonStreamerBuilder;")
+                .line("import org.tauterra.jsonstreamer.JsonStreamerBuilder.JsonStreamer;")
+                .line()
+                .line("/**")
+                .line(" * Parser and streamer for {@link " + target + "}, generated by")
+                .line(" * {@code " + getClass().getName() + "}.")
+                .line(" */")
+                .open("public final class " + name)
+                .line()
+                .line("public static final JsonStreamer<" + target + "> STREAMER = " + name + "::accept;")
+                .line()
+                .line("/**")
+                .line(" * Compiled builder delegating to {@link #parseObjectInto}, for use")
+                .line(" * wherever a {@link JsonObjectBuilder} is expected.")
+                .line(" */")
+                .open("public static final JsonObjectBuilder<" + target + "> BUILDER = new JsonObjectBuilder<" + target + ">(" + target + "::new)")
+                .line("@Override")
+                .open("public " + target + " parseObjectInto(JsonParser parser, " + target + " target) throws IOException, JsonObjectParserException")
+                .line("return " + name + ".parseObjectInto(parser, target);")
+                .close()
+                .close("}.compile();")
+                .outdent()
+                .line()
+                .line("private static final byte[] NULL = ascii(\"null\");")
+                .line("private static final byte[] TRUE = ascii(\"true\");")
+                .line("private static final byte[] FALSE = ascii(\"false\");");
+        for (int idx = 0; idx < fields.size(); idx++) {
+            String key = literal(fields.get(idx).key);
+            src.line("private static final byte[] K" + idx + " = " + key + ".getBytes(StandardCharsets.UTF_8);");
+            src.line("private static final byte[] N" + idx + " = name(" + key + ");");
+        }
+        src.line()
+                .open("private " + name + "()")
+                .close()
+                .line()
+                .open("public static " + target + " parseObject(JsonParser parser) throws IOException, JsonObjectParserException")
+                .line("return parseObjectInto(parser, new " + target + "());")
+                .close()
+                .line()
+                .open("public static " + target + " parseObjectInto(JsonParser parser, " + target + " target) throws IOException, JsonObjectParserException")
+                .open("if (next(parser) != Event.START_OBJECT)")
+                .line("throw new JsonObjectParserException(\"Expected object start (line: \" + parser.line() + \")\");")
+                .close()
+                .open("for (;;)")
+                .line("Event event = next(parser);")
+                .open("if (event == Event.END_OBJECT)")
+                .line("return target;")
+                .close("} else if (event != Event.KEY_NAME) {")
+                .line("throw new JsonObjectParserException(\"Expected key (line: \" + parser.line() + \")\");")
+                .close();
+        Map<Integer, List<Integer>> byLength = new TreeMap<>();
+        for (int idx = 0; idx < fields.size(); idx++) {
+            int length = fields.get(idx).key.getBytes(StandardCharsets.UTF_8).length;
+            byLength.computeIfAbsent(length, k -> new ArrayList<>()).add(idx);
+        }
+        List<Integer> all = new ArrayList<>();
+        for (int idx = 0; idx < fields.size(); idx++) {
+            all.add(idx);
+        }
+        if (!fields.isEmpty()) {
+            src.open("switch (parser.keyLength())");
+            for (Map.Entry<Integer, List<Integer>> entry : byLength.entrySet()) {
+                dispatch(src, "case " + entry.getKey() + ":", entry.getValue());
+            }
+            dispatch(src, "case -1: // escaped", all);
+            src.close();
+        }
+        src.line("skip(parser);")
+                .close()
+                .close();
+        for (int idx = 0; idx < fields.size(); idx++) {
+            read(src, target, fields.get(idx), idx);
+        }
+        src.line()
+                .open("public static void parseArrayOf(JsonParser parser, Consumer<" + target + "> elementHandler) throws IOException, JsonObjectParserException")
+                .open("if (next(parser) != Event.START_ARRAY)")
+                .line("throw new JsonObjectParserException(\"Expected array start\");")
+                .close()
+                .line("Event event;")
+                .open("while ((event = next(parser)) != Event.END_ARRAY)")
+                .open("if (event == Event.START_OBJECT)")
+                .line("parser.pushBack();")
+                .line("elementHandler.accept(parseObject(parser));")
+                .close("} else {")
+                .line("other(parser, event);")
+                .line("elementHandler.accept(null);")
+                .close()
+                .close()
+                .close()
+                .line()
+                .open("public static void accept(" + target + " obj, OutputStream os, int indent)")
+                .line("accept(obj, os, 0, indent, indent);")
+                .close()
+                .line()
+                .open("public static void accept(" + target + " obj, OutputStream os, int predent, int indent, int indentOffset)")
+                .line("predent = Math.max(0, predent);")
+                .line("indent = Math.max(0, indent);")
+                .line("indentOffset = Math.max(0, indentOffset);")
+                .line("final byte[] co = ascii(indent == 0 ? \":\" : \": \");")
+                .line("final byte[] sep = ascii(indent == 0 ? \",\" : \",\\n\");")
+                .line("final byte[] nl = ascii(indent == 0 ? \"\" : \"\\n\");")
+                .line("final byte[] idt = spaces(indent);")
+                .open("try")
+                .line("os.write('{');")
+                .line("os.write(nl);");
+        for (int idx = 0; idx < fields.size(); idx++) {
+            if (idx > 0) {
+                src.line("os.write(sep);");
+            }
+            src.line("os.write(idt);")
+                    .line("os.write(N" + idx + ");")
+                    .line("os.write(co);");
+            value(src, fields.get(idx));
+        }
+        src.line("os.write(nl);")
+                .line("os.write(spaces(predent));")
+                .line("os.write('}');")
+                .close("} catch (IOException e) {")
+                .line("throw new UncheckedIOException(e);")
+                .close()
+                .close()
+                .line()
+                .open("private static Event next(JsonParser parser) throws IOException, JsonObjectParserException")
+                .line("Event event = parser.next();")
+                .open("if (event == null || event == Event.NEED_MORE_INPUT)")
+                .line("throw new JsonObjectParserException(\"Unexpected input (line: \" + parser.line() + \")\");")
+                .close()
+                .line("return event;")
+                .close()
+                .line()
+                .open("private static void skip(JsonParser parser) throws IOException, JsonObjectParserException")
+                .line("Event event = parser.skipValue();")
+                .open("if (event == null || event == Event.NEED_MORE_INPUT)")
+                .line("throw new JsonObjectParserException(\"Unexpected input (line: \" + parser.line() + \")\");")
+                .close()
+                .close()
+                .line()
+                .line("/**")
+                .line(" * Steps over a value of an unexpected type whose first event was read.")
+                .line(" */")
+                .open("private static void other(JsonParser parser, Event event) throws IOException, JsonObjectParserException")
+                .open("if (event == Event.START_OBJECT || event == Event.START_ARRAY)")
+                .line("parser.pushBack();")
+                .line("skip(parser);")
+                .close()
+                .close()
+                .line()
+                .open("private static byte[] ascii(String value)")
+                .line("return value.getBytes(StandardCharsets.US_ASCII);")
+                .close()
+                .line()
+                .open("private static byte[] spaces(int count)")
+                .line("byte[] spaces = new byte[count];")
+                .line("Arrays.fill(spaces, (byte) ' ');")
+                .line("return spaces;")
+                .close()
+                .line()
+                .open("private static byte[] name(String name)")
+                .line("ByteArrayOutputStream os = new ByteArrayOutputStream();")
+                .open("try")
+                .line("JsonStreamerBuilder.writeString(os, name);")
+                .close("} catch (IOException e) {")
+                .line("throw new UncheckedIOException(e);")
+                .close()
+                .line("return os.toByteArray();")
+                .close()
+                .close();
+        try (Writer writer = processingEnv.getFiler().createSourceFile(pkg + name, type).openWriter()) {
+            writer.write(src.toString());
+        }
+    }
+
+    private static void dispatch(Source src, String label, List<Integer> candidates) {
+        src.line(label).indent();
+        for (int idx : candidates) {
+            src.open("if (parser.keyEquals(K" + idx + "))")
+                    .line("read" + idx + "(parser, target);")
+                    .line("continue;")
+                    .close();
+        }
+        src.line("break;").outdent();
+    }
+
+    private static void read(Source src, String target, Field field, int idx) {
+        String assign = "target." + field.name + " = ";
+        src.line()
+                .open("private static void read" + idx + "(JsonParser parser, " + target + " target) throws IOException, JsonObjectParserException")
+                .line("Event event = next(parser);");
+        switch (field.kind) {
+            case STRING:
+                src.open("if (event == Event.VALUE_STRING)")
+                        .line(assign + "parser.sval();");
+                break;
+            case OBJECT:
+                src.open("if (event == Event.START_OBJECT)")
+                        .line("parser.pushBack();")
+                        .line(assign + field.generated + ".parseObject(parser);");
+                break;
+            case BOOLEAN:
+                src.open("if (event == Event.VALUE_TRUE || event == Event.VALUE_FALSE)")
+                        .line(assign + "parser.bval();");
+                break;
+            default:
+                String cast = field.kind == Kind.LONG || field.kind == Kind.DOUBLE ? "" : "(" + field.kind.primitive + ") ";
+                src.open("if (event == Event.VALUE_NUMBER)")
+                        .line(assign + cast + "parser." + (field.kind.floating ? "doubleValue" : "longValue") + "();");
+                break;
+        }
+        if (field.nullable) {
+            src.close("} else if (event == Event.VALUE_NULL) {")
+                    .line(assign + "null;");
+        }
+        src.close("} else {")
+                .line("other(parser, event);")
+                .close()
+                .close();
+    }
+
+    private static void value(Source src, Field field) {
+        String value = "obj." + field.name;
+        if (field.nullable && field.kind != Kind.STRING) {
+            src.open("if (" + value + " == null)")
+                    .line("os.write(NULL);")
+                    .close("} else {");
+        }
+        switch (field.kind) {
+            case STRING:
+                src.line("JsonStreamerBuilder.writeString(os, " + value + ");");
+                break;
+            case OBJECT:
+                src.line(field.generated + ".accept(" + value + ", os, indent, indent + indentOffset, indentOffset);");
+                break;
+            case BOOLEAN:
+                src.line("os.write(" + value + " ? TRUE : FALSE);");
+                break;
+            case DOUBLE:
+            case FLOAT:
+                // JSON has no NaN or infinities
+                src.open("if (" + field.kind.boxed + ".isFinite(" + value + "))")
+                        .line("os.write(ascii(String.valueOf(" + value + ")));")
+                        .close("} else {")
+                        .line("os.write(NULL);")
+                        .close();
+                break;
+            default:
+                src.line("os.write(ascii(String.valueOf(" + value + ")));");
+                break;
+        }
+        if (field.nullable && field.kind != Kind.STRING) {
+            src.close();
+        }
+    }
+
+    private static String literal(String value) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < ' ') {
+                // unicode escapes are translated before tokenizing, so line
+                // terminators must use character or octal escapes
+                int idx = "\b\t\n\f\r".indexOf(c);
+                sb.append(idx >= 0 ? "\\" + "btnfr".charAt(idx) : String.format("\\%03o", (int) c));
+            } else if (c > '~') {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    /**
+     * Indenting source writer.
+     */
+    private static final class Source {
+
+        private final StringBuilder sb = new StringBuilder();
+        private int depth = 0;
+
+        Source line() {
+            sb.append('\n');
+            return this;
+        }
+
+        Source line(String text) {
+            sb.append(String.join("", Collections.nCopies(depth, "    "))).append(text).append('\n');
+            return this;
+        }
+
+        Source indent() {
+            depth++;
+            return this;
+        }
+
+        Source outdent() {
+            depth--;
+            return this;
+        }
+
+        Source open(String text) {
+            return line(text + " {").indent();
+        }
+
+        Source close() {
+            return outdent().line("}");
+        }
+
+        /**
+         * Closes a block and opens the next one on the same line.
+         */
+        Source close(String text) {
+            return outdent().line(text).indent();
+        }
+
+        @Override
+        public String toString() {
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2018 Nicholas Folse <https://github.com/NF1198>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tauterra.jsonstreamer;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+import org.tauterra.jsonstreamer.JsonObjectBuilder.JsonObjectParserException;
+
+/**
+ * Runs the batches of one parse on an {@link Executor} and hands their
+ * elements to the element handler on the calling thread, either in
+ * submission order or in the order the batches complete. Shared by
+ * {@link JsonParallelReader} and {@link JsonPipelineReader}.
+ *
+ * Not thread-safe: all methods are called by the thread reading the input.
+ *
+ * @author Nicholas Folse <https://github.com/NF1198>
+ * @param <U> type of the elements
+ */
+final class JsonBatchExecutor<U> {
+
+    /**
+     * Parses one batch on a worker thread.
+     */
+    @FunctionalInterface
+    static interface BatchTask<U> {
+
+        List<U> parse() throws IOException, JsonObjectParserException;
+    }
+
+    private static final class Batch<U> {
+
+        List<U> elements;
+        Throwable error;
+    }
+
+    private final Executor executor;
+    private final int maxInFlight;
+    private final boolean ordered;
+    private final Consumer<U> elementHandler;
+    private final Deque<CompletableFuture<Batch<U>>> inFlight = new ArrayDeque<>();
+    private final BlockingQueue<Batch<U>> completed = new LinkedBlockingQueue<>();
+    private volatile boolean cancelled = false;
+    private int pending = 0;
+
+    JsonBatchExecutor(Executor executor, int maxInFlight, boolean ordered, Consumer<U> elementHandler) {
+        this.executor = executor;
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.ordered = ordered;
+        this.elementHandler = elementHandler;
+    }
+
+    /**
+     * Parses the elements in the parser's input: objects are built by
+     * {@code builder}, other values are skipped and produce null.
+     */
+    static <U> List<U> parseElements(JsonObjectBuilder<U> builder, JsonParser parser) throws IOException, JsonObjectParserException {
+        List<U> elements = new ArrayList<>();
+        int c;
+        while ((c = parser.peekToken()) != JsonParser.TT_EOF) {
+            if (c == JsonParser.TT_OBJBEGIN) {
+                elements.add(builder.parseObject(parser));
+            } else {
+                parser.skipValue();
+                elements.add(null);
+            }
+        }
+        return elements;
+    }
+
+    /**
+     * Submits a batch, first delivering batches while
+     * {@code maxInFlight} of them are pending.
+     */
+    void submit(BatchTask<U> task) throws IOException, JsonObjectParserException {
+        while (pending >= maxInFlight) {
+            deliverOne();
+        }
+        CompletableFuture<Batch<U>> future = CompletableFuture.supplyAsync(() -> {
+            Batch<U> batch = new Batch<>();
+            if (!cancelled) {
+                try {
+                    batch.elements = task.parse();
+                } catch (Throwable t) {
+                    batch.error = t;
+                }
+            }
+            if (!ordered) {
+                completed.add(batch);
+            }
+            return batch;
+        }, executor);
+        pending++;
+        if (ordered) {
+            inFlight.add(future);
+        }
+    }
+
+    /**
+     * Delivers the batches that are already complete, without waiting.
+     */
+    void deliverCompleted() throws IOException, JsonObjectParserException {
+        if (ordered) {
+            while (!inFlight.isEmpty() && inFlight.peek().isDone()) {
+                deliverOne();
+            }
+        } else {
+            while (!completed.isEmpty()) {
+                deliverOne();
+            }
+        }
+    }
+
+    /**
+     * Waits for and delivers all pending batches.
+     */
+    void finish() throws IOException, JsonObjectParserException {
+        while (pending > 0) {
+            deliverOne();
+        }
+    }
+
+    /**
+     * Keeps batches that have not started from being parsed; called when
+     * the parse ends, normally or not.
+     */
+    void cancel() {
+        cancelled = true;
+        for (CompletableFuture<Batch<U>> future : inFlight) {
+            future.cancel(false);
+        }
+    }
+
+    private void deliverOne() throws IOException, JsonObjectParserException {
+        Batch<U> batch;
+        if (ordered) {
+            try {
+                batch = inFlight.poll().join();
+            } catch (CompletionException e) {
+                // the executor rejected or abandoned the task
+                pending--;
+                rethrow(e.getCause() != null ? e.getCause() : e);
+                return;
+            }
+        } else {
+            try {
+                batch = completed.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for a batch");
+            }
+        }
+        pending--;
+        if (batch.error != null) {
+            rethrow(batch.error);
+        }
+        for (U element : batch.elements) {
+            elementHandler.accept(element);
+        }
+    }
+
+    private static void rethrow(Throwable error) throws IOException, JsonObjectParserException {
+        if (error instanceof IOException) {
+            throw (IOException) error;
+        } else if (error instanceof JsonObjectParserException) {
+            throw (JsonObjectParserException) error;
+        } else if (error instanceof RuntimeException) {
+            throw (RuntimeException) error;
+        } else if (error instanceof Error) {
+            throw (Error) error;
+        }
+        throw new IllegalStateException(error);
+    }
+}
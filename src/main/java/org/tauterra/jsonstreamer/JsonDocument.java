@@ -0,0 +1,407 @@
+/*
+ * Copyright 2018 Nicholas Folse <https://github.com/NF1198>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tauterra.jsonstreamer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.tauterra.jsonstreamer.JsonObjectBuilder.JsonObjectParserException;
+
+/**
+ * Random access to a document held in memory, decoding only what is read.
+ *
+ * Building a document makes one pass over the structural index of the input
+ * and records one {@code long} per token on a tape: the byte offset of the
+ * token and, for objects and arrays, the tape index of the closing bracket
+ * (for scalars, an upper bound of the token's end). Nothing is decoded up
+ * front. Navigating with {@link Value#get(String)} and {@link Value#get(int)}
+ * steps over whole subtrees using the tape; keys are matched against raw
+ * bytes, and strings and numbers are decoded when their value is requested.
+ *
+ * Looking up a missing member or element yields a value of type
+ * {@link Type#MISSING}, so lookups can be chained.
+ *
+ * @author Nicholas Folse <https://github.com/NF1198>
+ */
+public class JsonDocument {
+
+    public static enum Type {
+        OBJECT, ARRAY, STRING, NUMBER, TRUE, FALSE, NULL, MISSING
+    }
+
+    private final byte[] data;
+    private final int end;
+    private final long[] tape;
+    private final int count;
+
+    private JsonDocument(byte[] data, int end, long[] tape, int count) {
+        this.data = data;
+        this.end = end;
+        this.tape = tape;
+        this.count = count;
+    }
+
+    public static JsonDocument parse(byte[] data) throws JsonObjectParserException {
+        return parse(data, 0, data.length);
+    }
+
+    /**
+     * Indexes {@code len} bytes of UTF-8 encoded JSON. The array is used in
+     * place and must not be modified while the document is in use.
+     */
+    public static JsonDocument parse(byte[] data, int off, int len) throws JsonObjectParserException {
+        JsonStructuralIndex index = new JsonStructuralIndex();
+        int structurals = index.index(data, off, off + len);
+        int[] offsets = index.tape();
+        long[] tape = new long[Math.max(1, structurals)];
+        int[] open = new int[32];
+        int depth = 0;
+        int count = 0;
+        for (int idx = 0; idx < structurals; idx++) {
+            int offset = offsets[idx];
+            if (count > 0 && depth == 0) {
+                throw new JsonObjectParserException("Unexpected input after document at offset " + offset);
+            }
+            switch (data[offset]) {
+                case ',':
+                case ':':
+                    continue;
+                case '{':
+                case '[':
+                    if (depth == open.length) {
+                        open = Arrays.copyOf(open, depth << 1);
+                    }
+                    open[depth++] = count;
+                    tape[count++] = (long) offset << 32;
+                    break;
+                case '}':
+                case ']':
+                    if (depth == 0 || data[offset] - data[(int) (tape[open[depth - 1]] >>> 32)] != 2) {
+                        throw new JsonObjectParserException("Unbalanced " + (char) data[offset] + " at offset " + offset);
+                    }
+                    tape[open[--depth]] |= count;
+                    tape[count++] = (long) offset << 32;
+                    break;
+                default:
+                    int bound = idx + 1 < structurals ? offsets[idx + 1] : off + len;
+                    tape[count++] = ((long) offset << 32) | bound;
+                    break;
+            }
+        }
+        if (depth != 0) {
+            throw new JsonObjectParserException("Unterminated " + (char) data[(int) (tape[open[depth - 1]] >>> 32)]);
+        } else if (count == 0) {
+            throw new JsonObjectParserException("Empty document");
+        }
+        return new JsonDocument(data, off + len, tape, count);
+    }
+
+    public static JsonDocument parse(InputStream is) throws IOException, JsonObjectParserException {
+        byte[] data = new byte[JsonScanner.DEFAULT_BUFFER_SIZE];
+        int len = 0;
+        int n;
+        while ((n = is.read(data, len, data.length - len)) >= 0) {
+            len += n;
+            if (len == data.length) {
+                data = Arrays.copyOf(data, data.length << 1);
+            }
+        }
+        return parse(data, 0, len);
+    }
+
+    public static JsonDocument parse(Path path) throws IOException, JsonObjectParserException {
+        return parse(Files.readAllBytes(path));
+    }
+
+    public Value root() {
+        return new Value(0);
+    }
+
+    public Value get(String key) {
+        return root().get(key);
+    }
+
+    public Value get(int index) {
+        return root().get(index);
+    }
+
+    /**
+     * Number of entries on the tape.
+     */
+    public int tokenCount() {
+        return count;
+    }
+
+    private int offset(int entry) {
+        return (int) (tape[entry] >>> 32);
+    }
+
+    private int link(int entry) {
+        return (int) tape[entry];
+    }
+
+    private boolean isContainer(int entry) {
+        byte c = data[offset(entry)];
+        return c == '{' || c == '[';
+    }
+
+    /**
+     * Tape index of the entry following the value at {@code entry}.
+     */
+    private int after(int entry) {
+        return isContainer(entry) ? link(entry) + 1 : entry + 1;
+    }
+
+    /**
+     * Returns a scanner positioned after the token at {@code entry}.
+     */
+    private JsonScanner scan(int entry) {
+        int offset = offset(entry);
+        JsonScanner scanner = new JsonScanner(data, offset, end - offset);
+        try {
+            scanner.nextToken();
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // in-memory scanners do not read
+        }
+        return scanner;
+    }
+
+    /**
+     * True if the key at {@code entry} equals the UTF-8 encoded {@code name}.
+     */
+    private boolean keyEquals(int entry, byte[] name) {
+        int offset = offset(entry) + 1;
+        int bound = link(entry);
+        int n = name.length;
+        if (offset + n < bound && data[offset + n] == '"') {
+            int idx = 0;
+            while (idx < n && data[offset + idx] == name[idx] && name[idx] != '\\') {
+                idx++;
+            }
+            if (idx == n) {
+                return true;
+            }
+        }
+        for (int idx = offset; idx < bound && data[idx] != '"'; idx++) {
+            if (data[idx] == '\\') {
+                return new String(name, StandardCharsets.UTF_8).equals(scan(entry).sval());
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A position in the document; cheap to create and to navigate from.
+     */
+    public final class Value {
+
+        private final int entry;
+
+        private Value(int entry) {
+            this.entry = entry;
+        }
+
+        public Type type() {
+            if (entry < 0) {
+                return Type.MISSING;
+            }
+            switch (data[offset(entry)]) {
+                case '{':
+                    return Type.OBJECT;
+                case '[':
+                    return Type.ARRAY;
+                case '"':
+                    return Type.STRING;
+                default:
+                    JsonScanner scanner = scan(entry);
+                    switch (scanner.ttype()) {
+                        case JsonParser.TT_NUMBER:
+                            return Type.NUMBER;
+                        case JsonParser.TT_WORD:
+                            switch (scanner.word()) {
+                                case JsonScanner.WORD_TRUE:
+                                    return Type.TRUE;
+                                case JsonScanner.WORD_FALSE:
+                                    return Type.FALSE;
+                                case JsonScanner.WORD_NULL:
+                                    return Type.NULL;
+                            }
+                    }
+                    throw new IllegalStateException("Invalid value at offset " + offset(entry));
+            }
+        }
+
+        public boolean exists() {
+            return entry >= 0;
+        }
+
+        public boolean isNull() {
+            return entry >= 0 && type() == Type.NULL;
+        }
+
+        /**
+         * Member {@code key} of an object; missing if this is not an object
+         * or has no such member. Only the keys are looked at; member values
+         * are stepped over on the tape.
+         */
+        public Value get(String key) {
+            if (entry < 0 || data[offset(entry)] != '{') {
+                return new Value(-1);
+            }
+            byte[] name = key.getBytes(StandardCharsets.UTF_8);
+            int close = link(entry);
+            for (int idx = entry + 1; idx < close; idx = after(idx + 1)) {
+                if (keyEquals(idx, name)) {
+                    return new Value(idx + 1);
+                }
+            }
+            return new Value(-1);
+        }
+
+        /**
+         * Element {@code index} of an array; missing if this is not an array
+         * or the index is out of range.
+         */
+        public Value get(int index) {
+            if (entry < 0 || data[offset(entry)] != '[' || index < 0) {
+                return new Value(-1);
+            }
+            int close = link(entry);
+            int idx = entry + 1;
+            for (int n = 0; n < index && idx < close; n++) {
+                idx = after(idx);
+            }
+            return new Value(idx < close ? idx : -1);
+        }
+
+        /**
+         * Number of members or elements; 0 for scalars.
+         */
+        public int size() {
+            if (entry < 0 || !isContainer(entry)) {
+                return 0;
+            }
+            int step = data[offset(entry)] == '{' ? 2 : 1;
+            int size = 0;
+            int close = link(entry);
+            for (int idx = entry + 1; idx < close; idx = after(idx + step - 1)) {
+                size++;
+            }
+            return size;
+        }
+
+        public List<String> keys() {
+            List<String> keys = new ArrayList<>();
+            if (entry >= 0 && data[offset(entry)] == '{') {
+                int close = link(entry);
+                for (int idx = entry + 1; idx < close; idx = after(idx + 1)) {
+                    keys.add(scan(idx).sval());
+                }
+            }
+            return keys;
+        }
+
+        public List<Value> elements() {
+            List<Value> elements = new ArrayList<>();
+            if (entry >= 0 && data[offset(entry)] == '[') {
+                int close = link(entry);
+                for (int idx = entry + 1; idx < close; idx = after(idx)) {
+                    elements.add(new Value(idx));
+                }
+            }
+            return elements;
+        }
+
+        /**
+         * Decoded string value, or null if this is not a string.
+         */
+        public String asString() {
+            if (entry < 0 || data[offset(entry)] != '"') {
+                return null;
+            }
+            return scan(entry).sval();
+        }
+
+        public double asDouble() {
+            return number().dval();
+        }
+
+        /**
+         * Exact value of integral numbers in the range of {@code long}; other
+         * numbers are truncated toward zero.
+         */
+        public long asLong() {
+            return number().lval();
+        }
+
+        public boolean asBoolean() {
+            Type type = type();
+            if (type != Type.TRUE && type != Type.FALSE) {
+                throw new IllegalStateException("Not a boolean: " + type);
+            }
+            return type == Type.TRUE;
+        }
+
+        private JsonScanner number() {
+            if (entry >= 0) {
+                JsonScanner scanner = scan(entry);
+                if (scanner.ttype() == JsonParser.TT_NUMBER) {
+                    return scanner;
+                }
+            }
+            throw new IllegalStateException("Not a number: " + type());
+        }
+
+        /**
+         * The raw bytes of this value, as a read-only view of the document.
+         */
+        public ByteBuffer raw() {
+            if (entry < 0) {
+                return ByteBuffer.allocate(0);
+            }
+            int offset = offset(entry);
+            int limit = isContainer(entry) ? offset(link(entry)) + 1 : link(entry);
+            return ByteBuffer.wrap(data, offset, limit - offset).slice().asReadOnlyBuffer();
+        }
+
+        /**
+         * A parser over the raw bytes of this value, e.g. for materializing a
+         * subtree with a {@link JsonObjectBuilder}.
+         */
+        public JsonParser parser() {
+            int offset = entry < 0 ? end : offset(entry);
+            int limit = entry < 0 ? end : isContainer(entry) ? offset(link(entry)) + 1 : link(entry);
+            return new JsonParser(data, offset, limit - offset);
+        }
+
+        @Override
+        public String toString() {
+            if (entry < 0) {
+                return "MISSING";
+            }
+            ByteBuffer raw = raw();
+            byte[] bytes = new byte[raw.remaining()];
+            raw.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8).trim();
+        }
+    }
+}
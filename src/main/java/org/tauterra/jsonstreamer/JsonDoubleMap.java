@@ -0,0 +1,129 @@
+/*
+ * Copyright 2018 Nicholas Folse <https://github.com/NF1198>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tauterra.jsonstreamer;
+
+import java.util.Arrays;
+import java.util.function.ObjDoubleConsumer;
+
+/**
+ * Compact map from keys to unboxed numbers, for dictionary objects read with
+ * {@link JsonObjectBuilder#mapDoubleHandler}. Keys and values are kept in
+ * parallel arrays with open addressing, so no entry objects or boxed values
+ * are allocated per member.
+ *
+ * @author Nicholas Folse <https://github.com/NF1198>
+ */
+public class JsonDoubleMap {
+
+    private String[] keys;
+    private double[] values;
+    private int size = 0;
+
+    public JsonDoubleMap() {
+        this(8);
+    }
+
+    public JsonDoubleMap(int expectedSize) {
+        int capacity = 4;
+        while (capacity < expectedSize + (expectedSize >>> 1)) {
+            capacity <<= 1;
+        }
+        keys = new String[capacity];
+        values = new double[capacity];
+    }
+
+    /**
+     * Adds or replaces the value of {@code key}.
+     */
+    public JsonDoubleMap put(String key, double value) {
+        if (key == null) {
+            throw new NullPointerException("key");
+        }
+        int i = slot(keys, key);
+        values[i] = value;
+        if (keys[i] == null) {
+            keys[i] = key;
+            if (++size + (size >>> 1) > keys.length) {
+                grow();
+            }
+        }
+        return this;
+    }
+
+    public double get(String key, double defaultValue) {
+        int i = slot(keys, key);
+        return keys[i] != null ? values[i] : defaultValue;
+    }
+
+    public boolean containsKey(String key) {
+        return keys[slot(keys, key)] != null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, null);
+        size = 0;
+    }
+
+    /**
+     * Visits the entries in no particular order.
+     */
+    public void forEach(ObjDoubleConsumer<String> action) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                action.accept(keys[i], values[i]);
+            }
+        }
+    }
+
+    private static int slot(String[] keys, String key) {
+        int mask = keys.length - 1;
+        int h = key.hashCode() * 0x9E3779B9;
+        int i = (h ^ (h >>> 16)) & mask;
+        while (keys[i] != null && !keys[i].equals(key)) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    private void grow() {
+        String[] oldKeys = keys;
+        double[] oldValues = values;
+        keys = new String[oldKeys.length << 1];
+        values = new double[oldKeys.length << 1];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int j = slot(keys, oldKeys[i]);
+                keys[j] = oldKeys[i];
+                values[j] = oldValues[i];
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        forEach((k, v) -> sb.append(sb.length() > 1 ? ", " : "").append(k).append('=').append(v));
+        return sb.append('}').toString();
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2018 Nicholas Folse <https://github.com/NF1198>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tauterra.jsonstreamer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+import org.tauterra.jsonstreamer.JsonObjectBuilder.JsonObjectParserException;
+import org.tauterra.jsonstreamer.JsonParser.Event;
+
+/**
+ * Push-fed object reader for non-blocking I/O.
+ *
+ * Chunks are handed to {@link #feed(ByteBuffer)} as they arrive, e.g. from a
+ * selector thread, and the reader never blocks waiting for more. Each
+ * top-level object, and each element of a top-level array, is delivered to
+ * the element handler as soon as its last byte has been fed. Progress
+ * through an incomplete value is kept between chunks, so only the bytes of
+ * the value currently being read are retained.
+ *
+ * @author Nicholas Folse <https://github.com/NF1198>
+ * @param <U> type of the objects produced by the builder
+ */
+public class JsonFeedReader<U> {
+
+    private final JsonObjectBuilder<U> builder;
+    private final Consumer<U> elementHandler;
+    private final JsonParser parser = JsonParser.nonBlocking();
+    private boolean capturing = false;
+    private boolean skipping = false;
+    private boolean inArray = false;
+    private boolean done = false;
+    private boolean ended = false;
+
+    public JsonFeedReader(JsonObjectBuilder<U> builder, Consumer<U> elementHandler) {
+        this.builder = builder;
+        this.elementHandler = elementHandler;
+    }
+
+    /**
+     * Consumes the remaining bytes of {@code chunk} and delivers every value
+     * they complete.
+     */
+    public void feed(ByteBuffer chunk) throws IOException, JsonObjectParserException {
+        parser.feed(chunk);
+        drain();
+    }
+
+    /**
+     * Signals the end of the input and delivers any remaining value.
+     */
+    public void endOfInput() throws IOException, JsonObjectParserException {
+        parser.endOfInput();
+        ended = true;
+        drain();
+        if (!done) {
+            throw new JsonObjectParserException("Unexpected end of input (line: " + parser.line() + ")");
+        }
+    }
+
+    public boolean isDone() {
+        return done;
+    }
+
+    private void drain() throws IOException, JsonObjectParserException {
+        for (;;) {
+            if (capturing) {
+                ByteBuffer value = parser.captureValue();
+                if (value == null) {
+                    if (ended) {
+                        throw new JsonObjectParserException("Unexpected end of input (line: " + parser.line() + ")");
+                    }
+                    return;
+                }
+                capturing = false;
+                elementHandler.accept(builder.parseObject(new JsonParser(value)));
+                continue;
+            }
+            if (skipping) {
+                Event event = parser.skipValue();
+                if (event == null) {
+                    throw new JsonObjectParserException("Unexpected end of input (line: " + parser.line() + ")");
+                } else if (event == Event.NEED_MORE_INPUT) {
+                    return;
+                }
+                skipping = false;
+                elementHandler.accept(null);
+                continue;
+            }
+            int c = parser.peekToken();
+            switch (c) {
+                case JsonScanner.TT_NEED_MORE:
+                    return;
+                case JsonParser.TT_EOF:
+                    done = !inArray;
+                    return;
+                case JsonParser.TT_OBJBEGIN:
+                    capturing = true;
+                    break;
+                case JsonParser.TT_ARRAYBEGIN:
+                    if (inArray) {
+                        skipping = true;
+                    } else if (parser.next() == Event.START_ARRAY) {
+                        inArray = true;
+                    }
+                    break;
+                case JsonParser.TT_ARRAYEND:
+                    if (!inArray) {
+                        throw new JsonObjectParserException("Unexpected ']' (line: " + parser.line() + ")");
+                    }
+                    parser.next();
+                    inArray = false;
+                    break;
+                case JsonParser.TT_OBJEND:
+                    throw new JsonObjectParserException("Unexpected '}' (line: " + parser.line() + ")");
+                default:
+                    skipping = true;
+                    break;
+            }
+        }
+    }
+}
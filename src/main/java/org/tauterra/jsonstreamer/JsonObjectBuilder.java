@@ -16,15 +16,41 @@
 package org.tauterra.jsonstreamer;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ObjDoubleConsumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ObjLongConsumer;
 import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import org.tauterra.jsonstreamer.JsonParser.Event;
 
 /**
+ * Builds objects of type U from JSON objects using registered handlers.
+ *
+ * A {@link #compile() compiled} builder cannot be modified and may be shared
+ * by any number of threads calling the parse methods concurrently, provided
+ * the handlers, supplier and recycler are themselves thread-safe. Its
+ * dispatch table is read-only; the learned key order is kept per thread and
+ * the prediction counters are exact. Builders that are not compiled must not
+ * be modified while in use.
  *
  * @author Nicholas Folse <https://github.com/NF1198>
  * @param <U> Object builder of type U
@@ -38,8 +64,23 @@ public class JsonObjectBuilder<U> {
     private final Map<String, BiConsumer<U, Boolean>> booleanHandlers = new HashMap<>();
     private final Map<String, BiConsumer<U, ? extends Object>> objectHandlers = new HashMap<>();
     private final Map<String, JsonObjectBuilder<? extends Object>> objectBuilders = new HashMap<>();
+    private final Map<String, Function<U, ? extends Object>> objectGetters = new HashMap<>();
+    private final Map<String, ObjIntConsumer<U>> intHandlers = new HashMap<>();
+    private final Map<String, ObjLongConsumer<U>> longHandlers = new HashMap<>();
+    private final Map<String, ObjDoubleConsumer<U>> doubleHandlers = new HashMap<>();
+    private final Map<String, ObjBooleanConsumer<U>> boolHandlers = new HashMap<>();
+    private final Map<String, Consumer<U>> nullHandlers = new HashMap<>();
+    private final Map<String, BiConsumer<U, ByteBuffer>> rawHandlers = new HashMap<>();
+    private final Map<String, ArraySink<U>> arrayHandlers = new HashMap<>();
+    private final Map<String, MapSink<U>> mapHandlers = new HashMap<>();
 
     private TriConsumer<U, String, String> missingHandlerHandler = null;
+    private TriConsumer<U, String, ByteBuffer> missingRawHandler = null;
+    private Recycler<U> recycler = null;
+    private final Set<String> terminalFields = new LinkedHashSet<>();
+
+    private boolean compiled = false;
+    private volatile Dispatch<U> dispatch = null;
 
     public JsonObjectBuilder(Supplier<U> supplier) {
         this.supplier = supplier;
@@ -58,98 +99,360 @@ public class JsonObjectBuilder<U> {
         if (objectHandlers.containsKey(label)) {
             return true;
         }
-        return false;
+        if (intHandlers.containsKey(label) || longHandlers.containsKey(label)
+                || doubleHandlers.containsKey(label) || boolHandlers.containsKey(label)
+                || rawHandlers.containsKey(label) || arrayHandlers.containsKey(label) || mapHandlers.containsKey(label)) {
+            return true;
+        }
+        return nullHandlers.containsKey(label);
     }
 
     public void removeHandler(String label) {
+        replaceHandler(label);
+        nullHandlers.remove(label);
+    }
+
+    /**
+     * Removes the value handler of {@code label}, keeping its null handler.
+     */
+    private void replaceHandler(String label) {
+        modify();
         stringHandlers.remove(label);
         numberHandlers.remove(label);
         booleanHandlers.remove(label);
         objectHandlers.remove(label);
         objectBuilders.remove(label);
+        objectGetters.remove(label);
+        intHandlers.remove(label);
+        longHandlers.remove(label);
+        doubleHandlers.remove(label);
+        boolHandlers.remove(label);
+        rawHandlers.remove(label);
+        arrayHandlers.remove(label);
+        mapHandlers.remove(label);
     }
 
     public JsonObjectBuilder<U> stringHandler(String label, BiConsumer<U, String> handler) {
-        removeHandler(label);
+        replaceHandler(label);
         stringHandlers.put(label, handler);
         return this;
     }
 
     public JsonObjectBuilder<U> numberHandler(String label, BiConsumer<U, Double> handler) {
-        removeHandler(label);
+        replaceHandler(label);
         numberHandlers.put(label, handler);
         return this;
     }
 
     public JsonObjectBuilder<U> booleanHandler(String label, BiConsumer<U, Boolean> handler) {
-        removeHandler(label);
+        replaceHandler(label);
         booleanHandlers.put(label, handler);
         return this;
     }
 
     public <V> JsonObjectBuilder<U> objectHandler(String label, JsonObjectBuilder<V> builder, BiConsumer<U, V> handler) {
-        removeHandler(label);
+        replaceHandler(label);
         objectHandlers.put(label, handler);
         objectBuilders.put(label, builder);
         return this;
     }
 
+    /**
+     * Like {@link #objectHandler(String, JsonObjectBuilder, BiConsumer)}, but
+     * parses into the object returned by {@code getter} when it is not null,
+     * so nested objects of a reused target are reused as well. The handler is
+     * only called when the getter returns null, with a new object.
+     */
+    public <V> JsonObjectBuilder<U> objectHandler(String label, JsonObjectBuilder<V> builder, Function<U, V> getter, BiConsumer<U, V> handler) {
+        objectHandler(label, builder, handler);
+        objectGetters.put(label, getter);
+        return this;
+    }
+
+    /**
+     * Receives numbers as {@code int}, truncated toward zero, without boxing.
+     * Nulls go to the {@link #nullHandler(String, Consumer)} of the label.
+     */
+    public JsonObjectBuilder<U> intHandler(String label, ObjIntConsumer<U> handler) {
+        replaceHandler(label);
+        intHandlers.put(label, handler);
+        return this;
+    }
+
+    /**
+     * Receives numbers as {@code long}; integral values are exact.
+     */
+    public JsonObjectBuilder<U> longHandler(String label, ObjLongConsumer<U> handler) {
+        replaceHandler(label);
+        longHandlers.put(label, handler);
+        return this;
+    }
+
+    public JsonObjectBuilder<U> doubleHandler(String label, ObjDoubleConsumer<U> handler) {
+        replaceHandler(label);
+        doubleHandlers.put(label, handler);
+        return this;
+    }
+
+    /**
+     * Unboxed counterpart of {@link #booleanHandler(String, BiConsumer)}.
+     */
+    public JsonObjectBuilder<U> boolHandler(String label, ObjBooleanConsumer<U> handler) {
+        replaceHandler(label);
+        boolHandlers.put(label, handler);
+        return this;
+    }
+
+    /**
+     * Receives the source bytes of the value of {@code label}, whatever its
+     * type, without decoding it. The buffer is a view of the parser's input
+     * and is only valid until the parser is used again; copy it to keep it.
+     */
+    public JsonObjectBuilder<U> rawHandler(String label, BiConsumer<U, ByteBuffer> handler) {
+        replaceHandler(label);
+        rawHandlers.put(label, handler);
+        return this;
+    }
+
+    /**
+     * Receives an array of numbers as a {@code double[]}, filled without
+     * boxing; elements that are not numbers become NaN. A {@code null} value
+     * is passed on as null unless the label has a null handler.
+     */
+    public JsonObjectBuilder<U> doubleArrayHandler(String label, BiConsumer<U, double[]> handler) {
+        return arrayHandler(label, ArraySink.DOUBLES, handler);
+    }
+
+    /**
+     * Receives an array of numbers as a {@code long[]}; elements that are not
+     * numbers become 0.
+     */
+    public JsonObjectBuilder<U> longArrayHandler(String label, BiConsumer<U, long[]> handler) {
+        return arrayHandler(label, ArraySink.LONGS, handler);
+    }
+
+    /**
+     * Receives an array of numbers as an {@code int[]}, truncated toward
+     * zero; elements that are not numbers become 0.
+     */
+    public JsonObjectBuilder<U> intArrayHandler(String label, BiConsumer<U, int[]> handler) {
+        return arrayHandler(label, ArraySink.INTS, handler);
+    }
+
+    /**
+     * Receives an array of arrays of numbers as a {@code double[][]}; rows
+     * may differ in length. Elements that are not arrays become null rows.
+     */
+    public JsonObjectBuilder<U> doubleMatrixHandler(String label, BiConsumer<U, double[][]> handler) {
+        return arrayHandler(label, ArraySink.MATRIX, handler);
+    }
+
+    /**
+     * Receives nested arrays of numbers of any depth as one flat
+     * {@code double[]} in row-major order, together with their shape, e.g.
+     * {@code [[1, 2, 3], [4, 5, 6]]} as {@code [1, 2, 3, 4, 5, 6]} and
+     * {@code [2, 3]}. The arrays must be rectangular.
+     */
+    public JsonObjectBuilder<U> shapedArrayHandler(String label, ShapedArrayConsumer<U> handler) {
+        return arrayHandler(label, ArraySink.SHAPED, handler);
+    }
+
+    private JsonObjectBuilder<U> arrayHandler(String label, int kind, Object handler) {
+        replaceHandler(label);
+        arrayHandlers.put(label, new ArraySink<>(kind, handler));
+        return this;
+    }
+
+    /**
+     * Reads the object under {@code label} as a dictionary: every member is
+     * passed to {@code sink} as a key and a value parsed with
+     * {@code valueBuilder}, without collecting them. Values that are not
+     * objects are passed as null.
+     */
+    public <V> JsonObjectBuilder<U> mapHandler(String label, JsonObjectBuilder<V> valueBuilder, TriConsumer<U, String, V> sink) {
+        return mapHandler(label, new MapSink<>(MapSink.OBJECTS, sink, valueBuilder));
+    }
+
+    /**
+     * Dictionary of strings; members whose values are not strings or null
+     * are skipped.
+     */
+    public JsonObjectBuilder<U> mapStringHandler(String label, TriConsumer<U, String, String> sink) {
+        return mapHandler(label, new MapSink<>(MapSink.STRINGS, sink, null));
+    }
+
+    /**
+     * Dictionary of numbers, received without boxing, e.g. into a
+     * {@link JsonDoubleMap}; members whose values are not numbers are
+     * skipped.
+     */
+    public JsonObjectBuilder<U> mapDoubleHandler(String label, KeyDoubleConsumer<U> sink) {
+        return mapHandler(label, new MapSink<>(MapSink.DOUBLES, sink, null));
+    }
+
+    /**
+     * Dictionary of numbers as {@code long}; integral values are exact.
+     */
+    public JsonObjectBuilder<U> mapLongHandler(String label, KeyLongConsumer<U> sink) {
+        return mapHandler(label, new MapSink<>(MapSink.LONGS, sink, null));
+    }
+
+    private JsonObjectBuilder<U> mapHandler(String label, MapSink<U> sink) {
+        replaceHandler(label);
+        mapHandlers.put(label, sink);
+        return this;
+    }
+
+    /**
+     * Called for {@code null} values of {@code label} (and for elements of
+     * the wrong type in arrays handled by a primitive handler). Takes the
+     * place of the null passed to boxed handlers.
+     */
+    public JsonObjectBuilder<U> nullHandler(String label, Consumer<U> handler) {
+        modify();
+        nullHandlers.put(label, handler);
+        return this;
+    }
+
     public JsonObjectBuilder<U> missingElementHandler(TriConsumer<U, String, String> handler) {
+        modify();
         this.missingHandlerHandler = handler;
         return this;
     }
 
+    /**
+     * Receives the source bytes of the values of members without handlers,
+     * like {@link #rawHandler(String, BiConsumer)}, instead of the missing
+     * element handler.
+     */
+    public JsonObjectBuilder<U> missingRawHandler(TriConsumer<U, String, ByteBuffer> handler) {
+        modify();
+        this.missingRawHandler = handler;
+        return this;
+    }
+
+    /**
+     * Takes new objects from {@code recycler} before falling back to the
+     * supplier. Nested builders use their own recyclers.
+     */
+    public JsonObjectBuilder<U> recycler(Recycler<U> recycler) {
+        modify();
+        this.recycler = recycler;
+        return this;
+    }
+
+    /**
+     * Stops reading an object as soon as all of {@code labels} have been
+     * read, skipping the rest of it on raw bytes; handlers of later members
+     * (and the missing element handler) are not called. Labels need no
+     * handler of their own. At most 64 labels can be given; calling again
+     * replaces them.
+     */
+    public JsonObjectBuilder<U> terminalFields(String... labels) {
+        if (labels.length > 64) {
+            throw new IllegalArgumentException("At most 64 terminal fields");
+        }
+        modify();
+        terminalFields.clear();
+        terminalFields.addAll(Arrays.asList(labels));
+        return this;
+    }
+
     public TriConsumer<U, String, String> missingElementHandler() {
         return this.missingHandlerHandler != null ? this.missingHandlerHandler : (u, v, w) -> {
         };
     }
 
-    private void consumeObject(JsonParser parser) throws IOException, JsonObjectParserException {
-        Event event = parser.next();
-        if (!event.equals(Event.START_OBJECT)) {
-            throw new JsonObjectParserException("Expected object start (line: " + parser.line() + ")");
-        }
-        int depth = 1;
-        while (depth > 0) {
-            event = parser.next();
-            switch (event) {
-                case START_OBJECT:
-                    depth++;
-                    break;
-                case END_OBJECT:
-                    depth--;
-                    break;
+    /**
+     * Freezes this builder, and every builder reachable through its object
+     * and map handlers, into a dispatch table keyed on the raw UTF-8 bytes of the
+     * member names. Each key then resolves with a single probe into one typed
+     * handler slot, without decoding the key. Registering or removing
+     * handlers afterwards throws {@link IllegalStateException}.
+     *
+     * The table is published through a volatile field that the parse methods
+     * read before anything else, so a compiled builder can be handed to
+     * other threads by any means. Builders that are not compiled build the same
+     * table on first use and rebuild it after every change.
+     */
+    public synchronized JsonObjectBuilder<U> compile() {
+        if (!compiled) {
+            compiled = true;
+            for (JsonObjectBuilder<?> nested : objectBuilders.values()) {
+                nested.compile();
+            }
+            for (MapSink<U> sink : mapHandlers.values()) {
+                if (sink.valueBuilder != null) {
+                    sink.valueBuilder.compile();
+                }
             }
+            dispatch = new Dispatch<>(this);
         }
-        parser.pushBack();
+        return this;
     }
 
-    private void consumeArray(JsonParser parser) throws IOException, JsonObjectParserException {
-        Event event = parser.next();
-        if (!event.equals(Event.START_ARRAY)) {
-            throw new JsonObjectParserException("Expected array start.");
+    public synchronized boolean isCompiled() {
+        return compiled;
+    }
+
+    /**
+     * Number of keys dispatched by key-order prediction since the dispatch
+     * table was built; see {@link #predictionMisses()}. Key order is learned
+     * by each thread separately, and the counts of an object are added when
+     * it has been parsed.
+     */
+    public long predictionHits() {
+        Dispatch<U> table = dispatch;
+        return table != null ? table.hits.sum() : 0;
+    }
+
+    /**
+     * Number of keys, known or not, that did not match the predicted key and
+     * were looked up in the hash table.
+     */
+    public long predictionMisses() {
+        Dispatch<U> table = dispatch;
+        return table != null ? table.misses.sum() : 0;
+    }
+
+    /**
+     * Number of slots in the dispatch table.
+     */
+    int dispatchTableSize() {
+        return dispatch().size();
+    }
+
+    private synchronized void modify() {
+        if (compiled) {
+            throw new IllegalStateException("Builder is compiled");
         }
-        int depth = 1;
-        while (depth > 0) {
-            event = parser.next();
-            switch (event) {
-                case START_ARRAY:
-                    depth++;
-                    break;
-                case END_ARRAY:
-                    depth--;
-                    break;
-            }
+        dispatch = null;
+    }
+
+    private Dispatch<U> dispatch() {
+        Dispatch<U> table = dispatch;
+        if (table == null) {
+            dispatch = table = new Dispatch<>(this);
         }
-        parser.pushBack();
+        return table;
+    }
+
+    static Event next(JsonParser parser) throws IOException, JsonObjectParserException {
+        Event event = parser.next();
+        if (event == null) {
+            throw new JsonObjectParserException("Unexpected input (line: " + parser.line() + ")");
+        } else if (event == Event.NEED_MORE_INPUT) {
+            throw new JsonObjectParserException("Incomplete input; read non-blocking parsers with JsonFeedReader");
+        }
+        return event;
     }
 
     public void parseArrayOf(JsonParser parser, Consumer<U> elementHandler) throws IOException, JsonObjectParserException {
-        Event next = parser.next();
+        Event next = next(parser);
         if (!next.equals(Event.START_ARRAY)) {
             throw new JsonObjectParserException("Expected array start");
         }
-        while (!parser.next().equals(Event.END_ARRAY)) {
+        while (!next(parser).equals(Event.END_ARRAY)) {
             Event currentEvent = parser.currentEvent();
             switch (currentEvent) {
                 case END_OBJECT:
@@ -170,7 +473,7 @@ public class JsonObjectBuilder<U> {
                 case START_ARRAY:
                     elementHandler.accept(null);
                     parser.pushBack();
-                    consumeArray(parser);
+                    parser.skipValue();
                     break;
                 case END_ARRAY:
                     break;
@@ -185,39 +488,158 @@ public class JsonObjectBuilder<U> {
         }
     }
 
-    private U parseArray(JsonParser parser, U result, String label) throws IOException, JsonObjectParserException {
-        if (stringHandlers.containsKey(label)) {
-            BiConsumer<U, String> stringHandler = stringHandlers.get(label);
-            parseStringArray(parser, result, stringHandler);
-            return result;
-        } else if (numberHandlers.containsKey(label)) {
-            BiConsumer<U, Double> numberHandler = numberHandlers.get(label);
-            parseNumberArray(parser, result, numberHandler);
-            return result;
-        } else if (booleanHandlers.containsKey(label)) {
-            BiConsumer<U, Boolean> booleanHandler = booleanHandlers.get(label);
-            parseBooleanArray(parser, result, booleanHandler);
-            return result;
-        } else if (objectHandlers.containsKey(label) && objectBuilders.containsKey(label)) {
-            @SuppressWarnings("unchecked")
-            BiConsumer<U, Object> objectHandler = (BiConsumer<U, Object>) objectHandlers.getOrDefault(label, null);
-            @SuppressWarnings("unchecked")
-            JsonObjectBuilder<Object> objectBuilder = (JsonObjectBuilder<Object>) objectBuilders.getOrDefault(label, null);
-            parseObjectArray(parser, result, objectHandler, objectBuilder);
-            return result;
-        } else {
-            missingElementHandler().accept(result, label, null);
+    /**
+     * Returns a lazy stream over the array at the parser's position. Nothing
+     * is read until the stream is consumed; each element is parsed when it is
+     * pulled, so short-circuiting operations such as {@code findFirst} or
+     * {@code limit} stop reading the input. Elements that are not objects
+     * are streamed as null, like in {@link #parseArrayOf}. Errors are
+     * rethrown as {@link UncheckedIOException} or
+     * {@link IllegalStateException}.
+     */
+    public Stream<U> streamArray(JsonParser parser) {
+        return StreamSupport.stream(new ArraySpliterator(parser), false);
+    }
+
+    private final class ArraySpliterator extends Spliterators.AbstractSpliterator<U> {
+
+        private final JsonParser parser;
+        private boolean started = false;
+        private boolean done = false;
+
+        ArraySpliterator(JsonParser parser) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED);
+            this.parser = parser;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super U> action) {
+            if (done) {
+                return false;
+            }
+            try {
+                if (!started) {
+                    started = true;
+                    if (next(parser) != Event.START_ARRAY) {
+                        done = true;
+                        throw new JsonObjectParserException("Expected array start");
+                    }
+                }
+                Event event = next(parser);
+                switch (event) {
+                    case END_ARRAY:
+                        done = true;
+                        return false;
+                    case START_OBJECT:
+                        parser.pushBack();
+                        action.accept(parseObject(parser));
+                        return true;
+                    case START_ARRAY:
+                        parser.pushBack();
+                        parser.skipValue();
+                        action.accept(null);
+                        return true;
+                    default:
+                        action.accept(null);
+                        return true;
+                }
+            } catch (IOException e) {
+                done = true;
+                throw new UncheckedIOException(e);
+            } catch (JsonObjectParserException e) {
+                done = true;
+                throw new IllegalStateException(e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Consumes the next value and returns a view of its source bytes.
+     */
+    private static ByteBuffer capture(JsonParser parser) throws IOException, JsonObjectParserException {
+        ByteBuffer value = parser.captureValue();
+        if (value == null || !value.hasRemaining()) {
+            throw new JsonObjectParserException("Expected value (line: " + parser.line() + ")");
+        }
+        return value;
+    }
+
+    private static String text(ByteBuffer value) {
+        return new String(value.array(), value.arrayOffset() + value.position(), value.remaining(), StandardCharsets.UTF_8);
+    }
+
+    private U parseArray(JsonParser parser, U result, Slot<U> slot, String label) throws IOException, JsonObjectParserException {
+        if (slot == null) {
+            if (missingHandlerHandler != null) {
+                missingHandlerHandler.accept(result, label, text(capture(parser)));
+            } else {
+                parser.skipValue();
+            }
             return result;
         }
+        switch (slot.kind) {
+            case Slot.STRING:
+                return parseStringArray(parser, result, slot.stringHandler);
+            case Slot.NUMBER:
+                return parseNumberArray(parser, result, slot.numberHandler);
+            case Slot.BOOLEAN:
+                return parseBooleanArray(parser, result, slot.booleanHandler);
+            case Slot.OBJECT:
+                return parseObjectArray(parser, result, slot.objectHandler, slot.objectBuilder);
+            case Slot.ARRAY:
+                slot.arraySink.accept(result, parser);
+                return result;
+            case Slot.MAP:
+            case Slot.NONE:
+                parser.skipValue();
+                return result;
+            default:
+                return parsePrimitiveArray(parser, result, slot);
+        }
+    }
+
+    private U parsePrimitiveArray(JsonParser parser, U result, Slot<U> slot) throws IOException, JsonObjectParserException {
+        Event next = next(parser);
+        if (!next.equals(Event.START_ARRAY)) {
+            throw new JsonObjectParserException("Expected array start");
+        }
+        while ((next = next(parser)) != Event.END_ARRAY) {
+            switch (next) {
+                case VALUE_NUMBER:
+                    if (!slot.number(result, parser)) {
+                        slot.nullValue(result);
+                    }
+                    break;
+                case VALUE_FALSE:
+                case VALUE_TRUE:
+                    if (slot.kind == Slot.BOOL) {
+                        slot.boolHandler.accept(result, parser.bval());
+                    } else {
+                        slot.nullValue(result);
+                    }
+                    break;
+                case START_ARRAY:
+                case START_OBJECT:
+                    parser.pushBack();
+                    parser.skipValue();
+                    slot.nullValue(result);
+                    break;
+                default:
+                    slot.nullValue(result);
+                    break;
+            }
+        }
+        parser.pushBack();
+        return result;
     }
 
     public U parseStringArray(JsonParser parser, U target, BiConsumer<U, String> stringHandler) throws IOException, JsonObjectParserException {
-        Event next = parser.next();
+        Event next = next(parser);
         if (!next.equals(Event.START_ARRAY)) {
             throw new JsonObjectParserException("Expected array start");
         }
         U result = target;
-        while (!parser.next().equals(Event.END_ARRAY)) {
+        while (!next(parser).equals(Event.END_ARRAY)) {
             Event currentEvent = parser.currentEvent();
             switch (currentEvent) {
                 case END_OBJECT:
@@ -238,14 +660,14 @@ public class JsonObjectBuilder<U> {
                 case START_ARRAY:
                     stringHandler.accept(result, null);
                     parser.pushBack();
-                    consumeArray(parser);
+                    parser.skipValue();
                     break;
                 case END_ARRAY:
                     break;
                 case START_OBJECT:
                     stringHandler.accept(result, null);
                     parser.pushBack();
-                    consumeObject(parser);
+                    parser.skipValue();
                     break;
                 case VALUE_NULL:
                     stringHandler.accept(result, null);
@@ -257,12 +679,12 @@ public class JsonObjectBuilder<U> {
     }
 
     public U parseNumberArray(JsonParser parser, U target, BiConsumer<U, Double> numberHandler) throws IOException, JsonObjectParserException {
-        Event next = parser.next();
+        Event next = next(parser);
         if (!next.equals(Event.START_ARRAY)) {
             throw new JsonObjectParserException("Expected array start");
         }
         U result = target;
-        while (!parser.next().equals(Event.END_ARRAY)) {
+        while (!next(parser).equals(Event.END_ARRAY)) {
             Event currentEvent = parser.currentEvent();
             switch (currentEvent) {
                 case END_OBJECT:
@@ -283,14 +705,14 @@ public class JsonObjectBuilder<U> {
                 case START_ARRAY:
                     numberHandler.accept(result, null);
                     parser.pushBack();
-                    consumeArray(parser);
+                    parser.skipValue();
                     break;
                 case END_ARRAY:
                     break;
                 case START_OBJECT:
                     numberHandler.accept(result, null);
                     parser.pushBack();
-                    consumeObject(parser);
+                    parser.skipValue();
                     break;
                 case VALUE_NULL:
                     numberHandler.accept(result, null);
@@ -302,12 +724,12 @@ public class JsonObjectBuilder<U> {
     }
 
     public U parseBooleanArray(JsonParser parser, U target, BiConsumer<U, Boolean> booleanHandler) throws IOException, JsonObjectParserException {
-        Event next = parser.next();
+        Event next = next(parser);
         if (!next.equals(Event.START_ARRAY)) {
             throw new JsonObjectParserException("Expected array start");
         }
         U result = target;
-        while (!parser.next().equals(Event.END_ARRAY)) {
+        while (!next(parser).equals(Event.END_ARRAY)) {
             Event currentEvent = parser.currentEvent();
             switch (currentEvent) {
                 case END_OBJECT:
@@ -328,14 +750,14 @@ public class JsonObjectBuilder<U> {
                 case START_ARRAY:
                     booleanHandler.accept(result, null);
                     parser.pushBack();
-                    consumeArray(parser);
+                    parser.skipValue();
                     break;
                 case END_ARRAY:
                     break;
                 case START_OBJECT:
                     booleanHandler.accept(result, null);
                     parser.pushBack();
-                    consumeObject(parser);
+                    parser.skipValue();
                     break;
                 case VALUE_NULL:
                     booleanHandler.accept(result, null);
@@ -347,12 +769,12 @@ public class JsonObjectBuilder<U> {
     }
 
     public <P> U parseObjectArray(JsonParser parser, U target, BiConsumer<U, P> objectHandler, JsonObjectBuilder<P> builder) throws IOException, JsonObjectParserException {
-        Event next = parser.next();
+        Event next = next(parser);
         if (!next.equals(Event.START_ARRAY)) {
             throw new JsonObjectParserException("Expected array start");
         }
         U result = target;
-        while (!parser.next().equals(Event.END_ARRAY)) {
+        while (!next(parser).equals(Event.END_ARRAY)) {
             Event currentEvent = parser.currentEvent();
             switch (currentEvent) {
                 case END_OBJECT:
@@ -373,7 +795,7 @@ public class JsonObjectBuilder<U> {
                 case START_ARRAY:
                     objectHandler.accept(result, null);
                     parser.pushBack();
-                    consumeArray(parser);
+                    parser.skipValue();
                     break;
                 case END_ARRAY:
                     break;
@@ -391,83 +813,740 @@ public class JsonObjectBuilder<U> {
     }
 
     public U parseObject(JsonParser parser) throws IOException, JsonObjectParserException {
-        U result = supplier.get();
+        return parseObjectInto(parser, newInstance());
+    }
 
-        Event event = parser.next();
+    private U newInstance() {
+        Recycler<U> source = dispatch().recycler;
+        U instance = source != null ? source.obtain() : null;
+        return instance != null ? instance : supplier.get();
+    }
+
+    /**
+     * Parses the next object into {@code target} instead of a new object and
+     * returns {@code target}. Only the handlers of the members present are
+     * called; fields of absent members keep their previous values.
+     */
+    public U parseObjectInto(JsonParser parser, U target) throws IOException, JsonObjectParserException {
+        final Dispatch<U> table = dispatch();
+        U result = target;
+
+        Event event = next(parser);
         if (event != Event.START_OBJECT) {
             throw new JsonObjectParserException("Expected object start (line: " + parser.line() + ")");
         }
 
+        Slot<U> slot = null;
         String label = null;
+        final Prediction prediction = table.prediction();
+        int previous = table.start;
+        long seen = 0;
         OUTER:
         while (parser.hasNext()) {
-            event = parser.next();
+            event = next(parser);
             INNER:
             switch (event) {
                 case END_OBJECT:
                     break OUTER;
                 case KEY_NAME:
-                    label = parser.sval();
+                    slot = table.lookup(parser, previous, prediction);
+                    if (slot != null) {
+                        previous = slot.ordinal;
+                        label = slot.label;
+                        if (slot.kind == Slot.RAW) {
+                            slot.rawHandler.accept(result, capture(parser));
+                        }
+                    } else if (missingRawHandler != null) {
+                        label = parser.sval();
+                        missingRawHandler.accept(result, label, capture(parser));
+                    } else {
+                        label = missingHandlerHandler != null ? parser.sval() : null;
+                    }
                     break;
                 case VALUE_STRING:
-                    BiConsumer<U, String> stringHandler = stringHandlers.getOrDefault(label, null);
-                    if (stringHandler != null) {
-                        stringHandler.accept(result, parser.sval());
-                    } else {
-                        missingElementHandler().accept(result, label, parser.sval());
+                    if (slot != null && slot.kind == Slot.STRING) {
+                        slot.stringHandler.accept(result, parser.sval());
+                    } else if (missingHandlerHandler != null) {
+                        missingHandlerHandler.accept(result, label, parser.sval());
                     }
                     break;
                 case VALUE_NUMBER:
-                    BiConsumer<U, Double> numberHandler = numberHandlers.getOrDefault(label, null);
-                    if (numberHandler != null) {
-                        numberHandler.accept(result, parser.nval());
-                    } else {
-                        missingElementHandler().accept(result, label, parser.nval().toString());
+                    if (slot != null && slot.kind == Slot.NUMBER) {
+                        slot.numberHandler.accept(result, parser.nval());
+                    } else if (slot != null && slot.number(result, parser)) {
+                        break;
+                    } else if (missingHandlerHandler != null) {
+                        missingHandlerHandler.accept(result, label, parser.nval().toString());
                     }
                     break;
                 case VALUE_FALSE:
                 case VALUE_TRUE:
-                    BiConsumer<U, Boolean> booleanHandler = booleanHandlers.getOrDefault(label, null);
-                    if (booleanHandler != null) {
-                        booleanHandler.accept(result, parser.bval());
-                    } else {
-                        missingElementHandler().accept(result, label, parser.sval());
+                    if (slot != null && slot.kind == Slot.BOOLEAN) {
+                        slot.booleanHandler.accept(result, parser.bval());
+                    } else if (slot != null && slot.kind == Slot.BOOL) {
+                        slot.boolHandler.accept(result, parser.bval());
+                    } else if (missingHandlerHandler != null) {
+                        missingHandlerHandler.accept(result, label, parser.sval());
                     }
                     break;
                 case START_ARRAY:
                     parser.pushBack();
-                    parseArray(parser, result, label);
+                    parseArray(parser, result, slot, label);
                     break;
                 case END_ARRAY:
                     break;
                 case START_OBJECT:
-                    @SuppressWarnings("unchecked") BiConsumer<U, Object> objectHandler = (BiConsumer<U, Object>) objectHandlers.getOrDefault(label, null);
-                    @SuppressWarnings("unchecked") JsonObjectBuilder<? extends Object> objectBuilder = objectBuilders.getOrDefault(label, null);
-                    if (objectHandler != null && objectBuilder != null) {
-                        parser.pushBack();
-                        Object nestedObject = objectBuilder.parseObject(parser);
-                        objectHandler.accept(result, nestedObject);
+                    parser.pushBack();
+                    if (slot != null && slot.kind == Slot.OBJECT) {
+                        slot.object(result, parser);
+                    } else if (slot != null && slot.kind == Slot.MAP) {
+                        slot.mapSink.accept(result, parser);
+                    } else if (missingHandlerHandler != null) {
+                        missingHandlerHandler.accept(result, label, text(capture(parser)));
                     } else {
-                        parser.pushBack();
-                        consumeObject(parser);
-                        missingElementHandler().accept(result, label, parser.sval());
+                        parser.skipValue();
                     }
                     break;
                 case VALUE_NULL:
-                    if ((numberHandler = numberHandlers.getOrDefault(label, null)) != null) {
-                        numberHandler.accept(result, null);
-                    } else if ((stringHandler = stringHandlers.getOrDefault(label, null)) != null) {
-                        stringHandler.accept(result, null);
-                    } else if ((booleanHandler = booleanHandlers.getOrDefault(label, null)) != null) {
-                        booleanHandler.accept(result, null);
+                    if (slot != null && slot.nullHandler != null) {
+                        slot.nullHandler.accept(result);
+                    } else if (slot != null) {
+                        switch (slot.kind) {
+                            case Slot.NUMBER:
+                                slot.numberHandler.accept(result, null);
+                                break;
+                            case Slot.STRING:
+                                slot.stringHandler.accept(result, null);
+                                break;
+                            case Slot.BOOLEAN:
+                                slot.booleanHandler.accept(result, null);
+                                break;
+                            case Slot.ARRAY:
+                                slot.arraySink.nullValue(result);
+                                break;
+                        }
+                    }
+                    break;
+            }
+            if (slot != null && slot.terminal != 0 && (event != Event.KEY_NAME || slot.kind == Slot.RAW)) {
+                seen |= slot.terminal;
+                if (seen == table.terminals) {
+                    event = parser.skipRest();
+                    if (event != Event.END_OBJECT) {
+                        throw new JsonObjectParserException("Unterminated object (line: " + parser.line() + ")");
                     }
                     break;
+                }
             }
         }
+        table.flush(prediction);
 //        parser.pushBack();
         return result;
     }
 
+    /**
+     * Handlers registered for one member name.
+     */
+    private static final class Slot<U> {
+
+        static final int STRING = 0;
+        static final int NUMBER = 1;
+        static final int BOOLEAN = 2;
+        static final int OBJECT = 3;
+        static final int INT = 4;
+        static final int LONG = 5;
+        static final int DOUBLE = 6;
+        static final int BOOL = 7;
+        static final int RAW = 8;
+        static final int ARRAY = 9;
+        static final int MAP = 10;
+        static final int NONE = 11;
+
+        final String label;
+        final byte[] key;
+        final int ordinal;
+        final int kind;
+        final long terminal;
+        final BiConsumer<U, String> stringHandler;
+        final BiConsumer<U, Double> numberHandler;
+        final BiConsumer<U, Boolean> booleanHandler;
+        final BiConsumer<U, Object> objectHandler;
+        final JsonObjectBuilder<Object> objectBuilder;
+        final Function<U, Object> objectGetter;
+        final ObjIntConsumer<U> intHandler;
+        final ObjLongConsumer<U> longHandler;
+        final ObjDoubleConsumer<U> doubleHandler;
+        final ObjBooleanConsumer<U> boolHandler;
+        final Consumer<U> nullHandler;
+        final BiConsumer<U, ByteBuffer> rawHandler;
+        final ArraySink<U> arraySink;
+        final MapSink<U> mapSink;
+
+        @SuppressWarnings("unchecked")
+        Slot(JsonObjectBuilder<U> owner, String label, int ordinal) {
+            this.label = label;
+            this.ordinal = ordinal;
+            this.key = label.getBytes(StandardCharsets.UTF_8);
+            this.stringHandler = owner.stringHandlers.get(label);
+            this.numberHandler = owner.numberHandlers.get(label);
+            this.booleanHandler = owner.booleanHandlers.get(label);
+            this.objectHandler = (BiConsumer<U, Object>) owner.objectHandlers.get(label);
+            this.objectBuilder = (JsonObjectBuilder<Object>) owner.objectBuilders.get(label);
+            this.objectGetter = (Function<U, Object>) owner.objectGetters.get(label);
+            this.intHandler = owner.intHandlers.get(label);
+            this.longHandler = owner.longHandlers.get(label);
+            this.doubleHandler = owner.doubleHandlers.get(label);
+            this.boolHandler = owner.boolHandlers.get(label);
+            this.nullHandler = owner.nullHandlers.get(label);
+            this.rawHandler = owner.rawHandlers.get(label);
+            this.arraySink = owner.arrayHandlers.get(label);
+            this.mapSink = owner.mapHandlers.get(label);
+            int index = 0;
+            for (String field : owner.terminalFields) {
+                if (field.equals(label)) {
+                    break;
+                }
+                index++;
+            }
+            this.terminal = index < owner.terminalFields.size() ? 1L << index : 0;
+            this.kind = stringHandler != null ? STRING : numberHandler != null ? NUMBER
+                    : booleanHandler != null ? BOOLEAN : objectBuilder != null ? OBJECT
+                    : intHandler != null ? INT : longHandler != null ? LONG
+                    : doubleHandler != null ? DOUBLE : boolHandler != null ? BOOL
+                    : rawHandler != null ? RAW : arraySink != null ? ARRAY
+                    : mapSink != null ? MAP : NONE;
+        }
+
+        /**
+         * Passes the current number to a primitive handler; false if this
+         * slot has none.
+         */
+        boolean number(U target, JsonParser parser) {
+            switch (kind) {
+                case INT:
+                    intHandler.accept(target, (int) parser.longValue());
+                    return true;
+                case LONG:
+                    longHandler.accept(target, parser.longValue());
+                    return true;
+                case DOUBLE:
+                    doubleHandler.accept(target, parser.doubleValue());
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        /**
+         * Parses the nested object, into the existing one if there is a
+         * getter and it returns one.
+         */
+        void object(U target, JsonParser parser) throws IOException, JsonObjectParserException {
+            Object existing = objectGetter != null ? objectGetter.apply(target) : null;
+            if (existing != null) {
+                objectBuilder.parseObjectInto(parser, existing);
+            } else {
+                objectHandler.accept(target, objectBuilder.parseObject(parser));
+            }
+        }
+
+        void nullValue(U target) {
+            if (nullHandler != null) {
+                nullHandler.accept(target);
+            }
+        }
+
+        boolean matches(byte[] buf, int start, int end) {
+            if (end - start != key.length) {
+                return false;
+            }
+            for (int idx = 0; idx < key.length; idx++) {
+                if (buf[start + idx] != key[idx]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Reads arrays of numbers into primitive arrays for one of the array
+     * handlers. Values are collected in growable arrays that are trimmed
+     * once the array ends.
+     */
+    private static final class ArraySink<U> {
+
+        static final int DOUBLES = 0;
+        static final int LONGS = 1;
+        static final int INTS = 2;
+        static final int MATRIX = 3;
+        static final int SHAPED = 4;
+
+        final int kind;
+        final Object handler;
+
+        ArraySink(int kind, Object handler) {
+            this.kind = kind;
+            this.handler = handler;
+        }
+
+        @SuppressWarnings("unchecked")
+        void accept(U target, JsonParser parser) throws IOException, JsonObjectParserException {
+            if (next(parser) != Event.START_ARRAY) {
+                throw new JsonObjectParserException("Expected array start");
+            }
+            switch (kind) {
+                case DOUBLES:
+                    ((BiConsumer<U, double[]>) handler).accept(target, doubles(parser));
+                    break;
+                case LONGS:
+                    ((BiConsumer<U, long[]>) handler).accept(target, longs(parser));
+                    break;
+                case INTS:
+                    long[] values = longs(parser);
+                    int[] ints = new int[values.length];
+                    for (int idx = 0; idx < values.length; idx++) {
+                        ints[idx] = (int) values[idx];
+                    }
+                    ((BiConsumer<U, int[]>) handler).accept(target, ints);
+                    break;
+                case MATRIX:
+                    ((BiConsumer<U, double[][]>) handler).accept(target, matrix(parser));
+                    break;
+                default:
+                    Shape shape = new Shape();
+                    shape.read(parser, 0);
+                    ((ShapedArrayConsumer<U>) handler).accept(target, Arrays.copyOf(shape.values, shape.size), shape.dims());
+                    break;
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        void nullValue(U target) {
+            switch (kind) {
+                case DOUBLES:
+                    ((BiConsumer<U, double[]>) handler).accept(target, null);
+                    break;
+                case LONGS:
+                    ((BiConsumer<U, long[]>) handler).accept(target, null);
+                    break;
+                case INTS:
+                    ((BiConsumer<U, int[]>) handler).accept(target, null);
+                    break;
+                case MATRIX:
+                    ((BiConsumer<U, double[][]>) handler).accept(target, null);
+                    break;
+                default:
+                    ((ShapedArrayConsumer<U>) handler).accept(target, null, null);
+                    break;
+            }
+        }
+
+        /**
+         * Reads the elements of an array whose start was consumed.
+         */
+        private static double[] doubles(JsonParser parser) throws IOException, JsonObjectParserException {
+            double[] values = new double[16];
+            int size = 0;
+            Event event;
+            while ((event = next(parser)) != Event.END_ARRAY) {
+                if (size == values.length) {
+                    values = Arrays.copyOf(values, size << 1);
+                }
+                values[size++] = event == Event.VALUE_NUMBER ? parser.doubleValue() : other(parser, event);
+            }
+            return Arrays.copyOf(values, size);
+        }
+
+        private static long[] longs(JsonParser parser) throws IOException, JsonObjectParserException {
+            long[] values = new long[16];
+            int size = 0;
+            Event event;
+            while ((event = next(parser)) != Event.END_ARRAY) {
+                if (size == values.length) {
+                    values = Arrays.copyOf(values, size << 1);
+                }
+                if (event == Event.VALUE_NUMBER) {
+                    values[size++] = parser.longValue();
+                } else {
+                    other(parser, event);
+                    values[size++] = 0;
+                }
+            }
+            return Arrays.copyOf(values, size);
+        }
+
+        private static double[][] matrix(JsonParser parser) throws IOException, JsonObjectParserException {
+            double[][] rows = new double[16][];
+            int size = 0;
+            Event event;
+            while ((event = next(parser)) != Event.END_ARRAY) {
+                if (size == rows.length) {
+                    rows = Arrays.copyOf(rows, size << 1);
+                }
+                if (event == Event.START_ARRAY) {
+                    rows[size++] = doubles(parser);
+                } else {
+                    other(parser, event);
+                    rows[size++] = null;
+                }
+            }
+            return Arrays.copyOf(rows, size);
+        }
+
+        /**
+         * Steps over an element of the wrong type and returns NaN.
+         */
+        private static double other(JsonParser parser, Event event) throws IOException {
+            if (event == Event.START_ARRAY || event == Event.START_OBJECT) {
+                parser.pushBack();
+                parser.skipValue();
+            }
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * Streams the members of a dictionary object to one of the map handlers.
+     */
+    private static final class MapSink<U> {
+
+        static final int OBJECTS = 0;
+        static final int STRINGS = 1;
+        static final int DOUBLES = 2;
+        static final int LONGS = 3;
+
+        final int kind;
+        final Object sink;
+        final JsonObjectBuilder<Object> valueBuilder;
+
+        @SuppressWarnings("unchecked")
+        MapSink(int kind, Object sink, JsonObjectBuilder<?> valueBuilder) {
+            this.kind = kind;
+            this.sink = sink;
+            this.valueBuilder = (JsonObjectBuilder<Object>) valueBuilder;
+        }
+
+        @SuppressWarnings("unchecked")
+        void accept(U target, JsonParser parser) throws IOException, JsonObjectParserException {
+            if (next(parser) != Event.START_OBJECT) {
+                throw new JsonObjectParserException("Expected object start (line: " + parser.line() + ")");
+            }
+            Event event;
+            while ((event = next(parser)) != Event.END_OBJECT) {
+                if (event != Event.KEY_NAME) {
+                    throw new JsonObjectParserException("Expected key (line: " + parser.line() + ")");
+                }
+                String key = parser.sval();
+                event = next(parser);
+                switch (kind) {
+                    case OBJECTS:
+                        Object value = null;
+                        if (event == Event.START_OBJECT) {
+                            parser.pushBack();
+                            value = valueBuilder.parseObject(parser);
+                        } else {
+                            ArraySink.other(parser, event);
+                        }
+                        ((TriConsumer<U, String, Object>) sink).accept(target, key, value);
+                        break;
+                    case STRINGS:
+                        if (event == Event.VALUE_STRING || event == Event.VALUE_NULL) {
+                            ((TriConsumer<U, String, String>) sink).accept(target, key, event == Event.VALUE_NULL ? null : parser.sval());
+                        } else {
+                            ArraySink.other(parser, event);
+                        }
+                        break;
+                    case DOUBLES:
+                        if (event == Event.VALUE_NUMBER) {
+                            ((KeyDoubleConsumer<U>) sink).accept(target, key, parser.doubleValue());
+                        } else {
+                            ArraySink.other(parser, event);
+                        }
+                        break;
+                    default:
+                        if (event == Event.VALUE_NUMBER) {
+                            ((KeyLongConsumer<U>) sink).accept(target, key, parser.longValue());
+                        } else {
+                            ArraySink.other(parser, event);
+                        }
+                        break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Flat values and dimensions of rectangular nested arrays.
+     */
+    private static final class Shape {
+
+        double[] values = new double[16];
+        int size = 0;
+        int[] dims = new int[4];
+        int leaf = -1;
+        int rank = 0;
+
+        /**
+         * Reads the elements of the array at {@code level}, whose start was
+         * consumed.
+         */
+        void read(JsonParser parser, int level) throws IOException, JsonObjectParserException {
+            if (level == dims.length) {
+                dims = Arrays.copyOf(dims, level << 1);
+            }
+            if (level == rank) {
+                dims[level] = -1;
+                rank = level + 1;
+            }
+            int count = 0;
+            Event event;
+            while ((event = next(parser)) != Event.END_ARRAY) {
+                count++;
+                if (event == Event.START_ARRAY) {
+                    if (leaf >= 0 && leaf <= level) {
+                        throw new JsonObjectParserException("Array is not rectangular (line: " + parser.line() + ")");
+                    }
+                    read(parser, level + 1);
+                    continue;
+                } else if (leaf < 0) {
+                    leaf = level;
+                } else if (leaf != level) {
+                    throw new JsonObjectParserException("Array is not rectangular (line: " + parser.line() + ")");
+                }
+                if (size == values.length) {
+                    values = Arrays.copyOf(values, size << 1);
+                }
+                values[size++] = event == Event.VALUE_NUMBER ? parser.doubleValue() : ArraySink.other(parser, event);
+            }
+            if (dims[level] < 0) {
+                dims[level] = count;
+            } else if (dims[level] != count) {
+                throw new JsonObjectParserException("Array is not rectangular (line: " + parser.line() + ")");
+            }
+        }
+
+        int[] dims() {
+            return Arrays.copyOf(dims, rank);
+        }
+    }
+
+    /**
+     * Perfect hash table over the UTF-8 key bytes, built by hash and
+     * displace: keys are grouped into buckets by their hash, and each bucket
+     * gets a displacement that moves all of its keys to free slots. The
+     * table has between two and four slots per key, and every lookup is one
+     * hash of the key, one probe and one byte comparison.
+     *
+     * Before probing, the key is compared with the key that followed the
+     * previous one the last time, so objects whose keys always come in the
+     * same order are dispatched by a byte comparison alone. The learned order
+     * and the hit counts are kept per thread in a {@link Prediction}, so the
+     * table itself is never written after construction; counts are added to
+     * the shared totals once per object.
+     */
+    private static final class Dispatch<U> {
+
+        private static final int MAX_SEEDS = 16;
+        private static final int MAX_DISPLACEMENT = 1 << 16;
+
+        private final Slot<U>[] slots;
+        private final int mask;
+        private final int[] displacements;
+        private final int seed;
+        private final Map<String, Slot<U>> byLabel;
+        private final Slot<U>[] byOrdinal;
+        private final ThreadLocal<Prediction> predictions;
+        final int start;
+        final Recycler<U> recycler;
+        final long terminals;
+        final LongAdder hits = new LongAdder();
+        final LongAdder misses = new LongAdder();
+
+        @SuppressWarnings("unchecked")
+        Dispatch(JsonObjectBuilder<U> owner) {
+            Map<String, Slot<U>> labels = new HashMap<>();
+            for (String label : owner.objectHandlers.keySet()) {
+                if (owner.objectBuilders.containsKey(label)) {
+                    labels.put(label, new Slot<>(owner, label, labels.size()));
+                }
+            }
+            for (Map<String, ?> handlers : Arrays.asList(owner.stringHandlers, owner.numberHandlers, owner.booleanHandlers,
+                    owner.intHandlers, owner.longHandlers, owner.doubleHandlers, owner.boolHandlers, owner.rawHandlers, owner.arrayHandlers, owner.mapHandlers, owner.nullHandlers)) {
+                for (String label : handlers.keySet()) {
+                    if (!labels.containsKey(label)) {
+                        labels.put(label, new Slot<>(owner, label, labels.size()));
+                    }
+                }
+            }
+            for (String label : owner.terminalFields) {
+                if (!labels.containsKey(label)) {
+                    labels.put(label, new Slot<>(owner, label, labels.size()));
+                }
+            }
+            this.byOrdinal = (Slot<U>[]) new Slot<?>[labels.size()];
+            for (Slot<U> slot : labels.values()) {
+                byOrdinal[slot.ordinal] = slot;
+            }
+            this.start = labels.size();
+            int hints = labels.size() + 1;
+            this.predictions = ThreadLocal.withInitial(() -> new Prediction(hints));
+            int size = Integer.highestOneBit(Math.max(1, labels.size()) * 2 - 1) << 1;
+            Slot<U>[] table = (Slot<U>[]) new Slot<?>[size];
+            int[] displaced = new int[Math.max(1, size >>> 2)];
+            int candidate = 0;
+            for (int attempt = 0;; attempt++) {
+                if (attempt == MAX_SEEDS) {
+                    throw new IllegalStateException("Cannot build dispatch table for " + labels.keySet());
+                }
+                candidate = 0x811C9DC5 + attempt * 0x9E3779B9;
+                if (place(labels.values(), table, displaced, candidate)) {
+                    break;
+                }
+                Arrays.fill(table, null);
+                Arrays.fill(displaced, 0);
+            }
+            this.slots = table;
+            this.mask = size - 1;
+            this.displacements = displaced;
+            this.seed = candidate;
+            this.byLabel = labels;
+            this.recycler = owner.recycler;
+            this.terminals = owner.terminalFields.isEmpty() ? -1L : -1L >>> (64 - owner.terminalFields.size());
+        }
+
+        /**
+         * Places the keys bucket by bucket, largest buckets first, trying
+         * displacements until all keys of a bucket land on free slots.
+         * Returns false if a bucket cannot be placed, or two keys have the
+         * same hash, within the bounded search.
+         */
+        private static <U> boolean place(Collection<Slot<U>> slots, Slot<U>[] table, int[] displaced, int seed) {
+            int mask = table.length - 1;
+            int bucketMask = displaced.length - 1;
+            List<List<Slot<U>>> buckets = new ArrayList<>(displaced.length);
+            for (int idx = 0; idx < displaced.length; idx++) {
+                buckets.add(new ArrayList<>());
+            }
+            int[] hashes = new int[slots.size()];
+            for (Slot<U> slot : slots) {
+                hashes[slot.ordinal] = hash(seed, slot.key, 0, slot.key.length);
+                buckets.get(hashes[slot.ordinal] & bucketMask).add(slot);
+            }
+            buckets.sort((a, b) -> b.size() - a.size());
+            int[] positions = new int[slots.size()];
+            for (List<Slot<U>> bucket : buckets) {
+                if (bucket.isEmpty()) {
+                    break;
+                }
+                int bucketIdx = hashes[bucket.get(0).ordinal] & bucketMask;
+                SEARCH:
+                for (int d = 0;; d++) {
+                    if (d == MAX_DISPLACEMENT) {
+                        return false;
+                    }
+                    for (int idx = 0; idx < bucket.size(); idx++) {
+                        Slot<U> slot = bucket.get(idx);
+                        int pos = index(hashes[slot.ordinal], d) & mask;
+                        if (table[pos] != null) {
+                            for (int placed = 0; placed < idx; placed++) {
+                                table[positions[bucket.get(placed).ordinal]] = null;
+                            }
+                            continue SEARCH;
+                        }
+                        table[pos] = slot;
+                        positions[slot.ordinal] = pos;
+                    }
+                    displaced[bucketIdx] = d;
+                    break;
+                }
+            }
+            return true;
+        }
+
+        private static int hash(int seed, byte[] buf, int start, int end) {
+            int h = seed;
+            for (int idx = start; idx < end; idx++) {
+                h = (h ^ buf[idx]) * 0x01000193;
+            }
+            return h ^ (h >>> 16);
+        }
+
+        private static int index(int hash, int displacement) {
+            int h = (hash >>> 7 | hash << 25) + displacement * 0x9E3779B9;
+            h = (h ^ (h >>> 16)) * 0x85EBCA6B;
+            return h ^ (h >>> 13);
+        }
+
+        int size() {
+            return slots.length;
+        }
+
+        Prediction prediction() {
+            return predictions.get();
+        }
+
+        /**
+         * Adds the counts of {@code state} to the totals.
+         */
+        void flush(Prediction state) {
+            if (state.hits != 0) {
+                hits.add(state.hits);
+                state.hits = 0;
+            }
+            if (state.misses != 0) {
+                misses.add(state.misses);
+                state.misses = 0;
+            }
+        }
+
+        /**
+         * Resolves the key of the parser's current event, which follows the
+         * key with ordinal {@code previous} (or {@link #start}). Keys
+         * containing escape sequences are decoded and looked up by name.
+         */
+        Slot<U> lookup(JsonParser parser, int previous, Prediction state) {
+            JsonScanner tok = parser.scanner();
+            if (tok.escaped()) {
+                state.misses++;
+                return byLabel.get(parser.sval());
+            }
+            byte[] buf = tok.buffer();
+            int start = tok.tokenStart();
+            int end = tok.tokenEnd();
+            int[] hints = state.hints;
+            int hint = hints[previous];
+            if (hint >= 0 && byOrdinal[hint].matches(buf, start, end)) {
+                state.hits++;
+                return byOrdinal[hint];
+            }
+            state.misses++;
+            int h = hash(seed, buf, start, end);
+            Slot<U> slot = slots[index(h, displacements[h & (displacements.length - 1)]) & mask];
+            if (slot != null && slot.matches(buf, start, end)) {
+                hints[previous] = slot.ordinal;
+                return slot;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Key order learned by one thread for one dispatch table, and the hits
+     * and misses not yet added to the table's totals.
+     */
+    private static final class Prediction {
+
+        final int[] hints;
+        long hits = 0;
+        long misses = 0;
+
+        Prediction(int size) {
+            hints = new int[size];
+            Arrays.fill(hints, -1);
+        }
+    }
+
     public static class JsonObjectParserException extends Exception {
 
         public JsonObjectParserException(String message) {
@@ -481,4 +1560,60 @@ public class JsonObjectBuilder<U> {
 
         void accept(U u, V v, W w);
     }
+
+    @FunctionalInterface
+    public static interface ObjBooleanConsumer<U> {
+
+        void accept(U u, boolean value);
+    }
+
+    @FunctionalInterface
+    public static interface KeyDoubleConsumer<U> {
+
+        void accept(U u, String key, double value);
+    }
+
+    @FunctionalInterface
+    public static interface KeyLongConsumer<U> {
+
+        void accept(U u, String key, long value);
+    }
+
+    @FunctionalInterface
+    public static interface ShapedArrayConsumer<U> {
+
+        void accept(U u, double[] values, int[] shape);
+    }
+
+    /**
+     * Source of reused objects for a builder. {@link #obtain()} returns null
+     * when there is nothing to reuse.
+     */
+    public static interface Recycler<U> {
+
+        U obtain();
+
+        void recycle(U instance);
+
+        /**
+         * A thread-safe recycler keeping up to {@code capacity} objects.
+         * Recycled objects are passed to {@code reset} first; surplus
+         * objects are left to the garbage collector.
+         */
+        public static <U> Recycler<U> bounded(int capacity, Consumer<U> reset) {
+            ArrayBlockingQueue<U> idle = new ArrayBlockingQueue<>(Math.max(1, capacity));
+            return new Recycler<U>() {
+                @Override
+                public U obtain() {
+                    return idle.poll();
+                }
+
+                @Override
+                public void recycle(U instance) {
+                    reset.accept(instance);
+                    idle.offer(instance);
+                }
+            };
+        }
+    }
 }
@@ -0,0 +1,375 @@
+/*
+ * Copyright 2018 Nicholas Folse <https://github.com/NF1198>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tauterra.jsonstreamer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import org.tauterra.jsonstreamer.JsonObjectBuilder.JsonObjectParserException;
+
+/**
+ * Parses a large top-level JSON array of independent objects on several
+ * cores.
+ *
+ * A structural pre-scan on the calling thread splits the array into batches
+ * of whole elements, cutting only at commas at the top nesting level
+ * (outside of strings). Each batch is parsed on a {@link ForkJoinPool} with
+ * a parser owned by the worker, and the elements are handed to the element
+ * handler on the calling thread, either in input order or in the order the
+ * batches complete. At most a few batches per worker are in flight, so
+ * memory use does not grow with the size of the input.
+ *
+ * The builder is shared by all workers and must not be modified while a
+ * parse is running.
+ *
+ * @author Nicholas Folse <https://github.com/NF1198>
+ * @param <U> type of the objects produced by the builder
+ */
+public class JsonParallelReader<U> {
+
+    public static final int DEFAULT_BATCH_SIZE = 1 << 20;
+
+    private static final long SCAN_WINDOW_SIZE = 1L << 26;
+
+    private final JsonObjectBuilder<U> builder;
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private boolean ordered = true;
+
+    public JsonParallelReader(JsonObjectBuilder<U> builder) {
+        this.builder = builder;
+    }
+
+    public JsonParallelReader<U> pool(ForkJoinPool pool) {
+        this.pool = pool;
+        return this;
+    }
+
+    /**
+     * Approximate number of input bytes parsed by one task.
+     */
+    public JsonParallelReader<U> batchSize(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+        return this;
+    }
+
+    /**
+     * If true (the default) elements are delivered in input order; otherwise
+     * batches are delivered as soon as they are parsed.
+     */
+    public JsonParallelReader<U> ordered(boolean ordered) {
+        this.ordered = ordered;
+        return this;
+    }
+
+    public void parseArrayOf(byte[] data, Consumer<U> elementHandler) throws IOException, JsonObjectParserException {
+        parseArrayOf(ByteBuffer.wrap(data), elementHandler);
+    }
+
+    /**
+     * Parses the remaining bytes of {@code buffer}, which may be a mapped
+     * file. The position of {@code buffer} is not changed.
+     */
+    public void parseArrayOf(ByteBuffer buffer, Consumer<U> elementHandler) throws IOException, JsonObjectParserException {
+        new Run(new BufferSource(buffer.slice()), elementHandler).execute();
+    }
+
+    /**
+     * Parses a file of any size; the pre-scan reads it through memory
+     * mappings and workers read their batches with positional reads.
+     */
+    public void parseArrayOf(Path path, Consumer<U> elementHandler) throws IOException, JsonObjectParserException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            new Run(new ChannelSource(channel), elementHandler).execute();
+        }
+    }
+
+    /**
+     * Random access to the input bytes.
+     */
+    private static interface Source {
+
+        long size();
+
+        /**
+         * Returns a buffer holding the bytes from {@code position} on. The
+         * absolute offset of a byte is its index plus
+         * {@code position - window.position()}.
+         */
+        ByteBuffer window(long position) throws IOException;
+
+        /**
+         * Points the worker's parser at the bytes [start, end), copying them
+         * into its scratch buffer if they cannot be scanned in place.
+         */
+        void load(long start, long end, Worker worker) throws IOException;
+    }
+
+    private static final class BufferSource implements Source {
+
+        private final ByteBuffer buffer;
+
+        BufferSource(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public long size() {
+            return buffer.remaining();
+        }
+
+        @Override
+        public ByteBuffer window(long position) {
+            ByteBuffer window = buffer.duplicate();
+            window.position((int) position);
+            return window;
+        }
+
+        @Override
+        public void load(long start, long end, Worker worker) {
+            int len = (int) (end - start);
+            if (buffer.hasArray()) {
+                worker.parser.reset(buffer.array(), buffer.arrayOffset() + (int) start, len);
+            } else {
+                ByteBuffer src = buffer.duplicate();
+                src.position((int) start);
+                src.get(worker.scratch(len), 0, len);
+                worker.parser.reset(worker.scratch, 0, len);
+            }
+        }
+    }
+
+    private static final class ChannelSource implements Source {
+
+        private final FileChannel channel;
+        private final long size;
+
+        ChannelSource(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+        }
+
+        @Override
+        public long size() {
+            return size;
+        }
+
+        @Override
+        public ByteBuffer window(long position) throws IOException {
+            long len = Math.min(SCAN_WINDOW_SIZE, size - position);
+            return channel.map(FileChannel.MapMode.READ_ONLY, position, len);
+        }
+
+        @Override
+        public void load(long start, long end, Worker worker) throws IOException {
+            int len = (int) (end - start);
+            ByteBuffer dst = ByteBuffer.wrap(worker.scratch(len), 0, len);
+            long position = start;
+            while (dst.hasRemaining()) {
+                int n = channel.read(dst, position);
+                if (n < 0) {
+                    break;
+                }
+                position += n;
+            }
+            worker.parser.reset(worker.scratch, 0, dst.position());
+        }
+    }
+
+    /**
+     * Per-worker parser and scratch buffer, reused across batches.
+     */
+    private static final class Worker {
+
+        final JsonParser parser = new JsonParser(new byte[0]);
+        byte[] scratch = new byte[0];
+
+        byte[] scratch(int len) {
+            if (scratch.length < len) {
+                scratch = new byte[len];
+            }
+            return scratch;
+        }
+    }
+
+    private final class Run {
+
+        private final Source source;
+        private final ConcurrentLinkedQueue<Worker> idle = new ConcurrentLinkedQueue<>();
+        private final JsonBatchExecutor<U> batches;
+
+        Run(Source source, Consumer<U> elementHandler) {
+            this.source = source;
+            this.batches = new JsonBatchExecutor<>(pool, Math.max(2, pool.getParallelism() * 4), ordered, elementHandler);
+        }
+
+        void execute() throws IOException, JsonObjectParserException {
+            try {
+                scan();
+                batches.finish();
+            } finally {
+                batches.cancel();
+            }
+        }
+
+        /**
+         * Walks the array once, tracking nesting depth and string state, and
+         * submits a batch whenever enough bytes have accumulated at a top
+         * level comma. Inside the array whole 64-byte blocks are classified
+         * at once and only their bracket and comma bits are visited.
+         */
+        private void scan() throws IOException, JsonObjectParserException {
+            final long size = source.size();
+            final JsonStructuralIndex index = new JsonStructuralIndex();
+            long position = 0;
+            long batchStart = -1;
+            int depth = 0;
+            boolean inString = false;
+            boolean escape = false;
+            while (position < size) {
+                ByteBuffer window = source.window(position);
+                ByteBuffer words = window.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+                long origin = position - window.position();
+                int limit = window.limit();
+                int idx = window.position();
+                while (idx < limit) {
+                    if (depth > 0 && limit - idx >= JsonStructuralIndex.BLOCK) {
+                        index.reset(inString, escape);
+                        index.classify(words, idx);
+                        long bits = index.open | index.close | index.commas;
+                        while (bits != 0) {
+                            long bit = bits & -bits;
+                            bits ^= bit;
+                            long at = origin + idx + Long.numberOfTrailingZeros(bit);
+                            if ((index.open & bit) != 0) {
+                                depth++;
+                            } else if ((index.close & bit) != 0) {
+                                if (--depth == 0) {
+                                    submit(batchStart, at);
+                                    expectEnd(at + 1);
+                                    return;
+                                }
+                            } else if (depth == 1 && at - batchStart >= batchSize) {
+                                submit(batchStart, at);
+                                batchStart = at;
+                            }
+                        }
+                        inString = index.inStringCarry();
+                        escape = index.escapeCarry();
+                        idx += JsonStructuralIndex.BLOCK;
+                        continue;
+                    }
+                    long at = origin + idx;
+                    byte b = window.get(idx++);
+                    if (inString) {
+                        if (escape) {
+                            escape = false;
+                        } else if (b == '\\') {
+                            escape = true;
+                        } else if (b == '"') {
+                            inString = false;
+                        }
+                        continue;
+                    }
+                    switch (b) {
+                        case '"':
+                            inString = true;
+                            break;
+                        case '[':
+                        case '{':
+                            if (depth == 0) {
+                                if (b != '[') {
+                                    throw new JsonObjectParserException("Expected array start");
+                                }
+                                batchStart = at + 1;
+                            }
+                            depth++;
+                            break;
+                        case ']':
+                        case '}':
+                            depth--;
+                            if (depth == 0) {
+                                submit(batchStart, at);
+                                expectEnd(at + 1);
+                                return;
+                            }
+                            break;
+                        case ',':
+                            if (depth == 1 && at - batchStart >= batchSize) {
+                                submit(batchStart, at);
+                                batchStart = at;
+                            }
+                            break;
+                        case ' ':
+                        case '\t':
+                        case '\r':
+                        case '\n':
+                            break;
+                        default:
+                            if (depth == 0) {
+                                throw new JsonObjectParserException("Expected array start");
+                            }
+                            break;
+                    }
+                }
+                position = origin + limit;
+            }
+            throw new JsonObjectParserException(depth == 0 ? "Expected array start" : "Unterminated array");
+        }
+
+        /**
+         * Checks that only whitespace follows the array.
+         */
+        private void expectEnd(long position) throws IOException, JsonObjectParserException {
+            final long size = source.size();
+            while (position < size) {
+                ByteBuffer window = source.window(position);
+                long origin = position - window.position();
+                for (int idx = window.position(); idx < window.limit(); idx++) {
+                    byte b = window.get(idx);
+                    if (b != ' ' && b != '\t' && b != '\r' && b != '\n') {
+                        throw new JsonObjectParserException("Unexpected data after array");
+                    }
+                }
+                position = origin + window.limit();
+            }
+        }
+
+        private void submit(long start, long end) throws IOException, JsonObjectParserException {
+            batches.submit(() -> parseBatch(start, end));
+        }
+
+        private List<U> parseBatch(long start, long end) throws IOException, JsonObjectParserException {
+            Worker worker = idle.poll();
+            if (worker == null) {
+                worker = new Worker();
+            }
+            try {
+                source.load(start, end, worker);
+                return JsonBatchExecutor.parseElements(builder, worker.parser);
+            } finally {
+                idle.offer(worker);
+            }
+        }
+    }
+}
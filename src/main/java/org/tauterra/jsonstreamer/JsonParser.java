@@ -15,26 +15,35 @@
  */
 package org.tauterra.jsonstreamer;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.StreamTokenizer;
-import java.util.ArrayDeque;
-import java.util.Deque;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 
 /**
  *
  * @author Nicholas Folse <https://github.com/NF1198>
  */
-public class JsonParser {
+public class JsonParser implements Closeable {
 
     private Event currentEvent;
-    private Double nval;
+    private double dval;
+    private long lval;
+    private boolean integral;
     private String sval;
     private boolean bval;
-    private final StreamTokenizer tok;
-    private final Deque<PState> stateStack;
-    private Runnable undoStateChange = null;
+    private final JsonScanner tok;
+    private byte[] stateStack = new byte[32];
+    private int depth = 0;
+    private int undoDepth = -1;
+    private Event skipEvent = null;
+    private boolean capturing = false;
+    private Closeable owned = null;
 
     public static final int TT_OBJBEGIN = (int) '{';
     public static final int TT_OBJEND = (int) '}';
@@ -43,26 +52,217 @@ public class JsonParser {
     public static final int TT_QUOTE = (int) '"';
     public static final int TT_ARRAYBEGIN = (int) '[';
     public static final int TT_ARRAYEND = (int) ']';
-    public static final int TT_EOF = StreamTokenizer.TT_EOF;
-    public static final int TT_EOL = StreamTokenizer.TT_EOL;
-    public static final int TT_NUMBER = StreamTokenizer.TT_NUMBER;
-    public static final int TT_WORD = StreamTokenizer.TT_WORD;
+    public static final int TT_EOF = -1;
+    public static final int TT_EOL = '\n';
+    public static final int TT_NUMBER = -2;
+    public static final int TT_WORD = -3;
 
     public JsonParser(InputStream is) {
-        StreamTokenizer tok_ = new StreamTokenizer(
-                new InputStreamReader(is));
-        tok_.eolIsSignificant(false);
-        tok_.quoteChar('\"');
-        this.tok = tok_;
-        this.stateStack = new ArrayDeque<>();
+        this(new JsonScanner(is));
+    }
+
+    /**
+     * Parses {@code len} bytes of UTF-8 encoded JSON in place, without
+     * copying the array.
+     */
+    public JsonParser(byte[] data, int off, int len) {
+        this(new JsonScanner(data, off, len));
+    }
+
+    public JsonParser(byte[] data) {
+        this(data, 0, data.length);
+    }
+
+    /**
+     * Parses the remaining bytes of {@code buffer}. Heap buffers are scanned
+     * in place; direct and mapped buffers are read with bulk gets into the
+     * parser's working buffer. The position of {@code buffer} is not changed.
+     */
+    public JsonParser(ByteBuffer buffer) {
+        this(buffer.hasArray()
+                ? new JsonScanner(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining())
+                : new JsonScanner(new JsonScanner.BufferInput(buffer), JsonScanner.MAPPED_BUFFER_SIZE));
+    }
+
+    /**
+     * Parses a file channel from its current position to its end through
+     * read-only memory mappings. The channel is not closed by the parser.
+     */
+    public JsonParser(FileChannel channel) throws IOException {
+        this(new JsonScanner(new JsonScanner.MappedInput(channel), JsonScanner.MAPPED_BUFFER_SIZE));
+    }
+
+    JsonParser(JsonScanner tok) {
+        this.tok = tok;
+    }
+
+    /**
+     * Creates a parser for non-blocking input. Bytes are supplied with
+     * {@link #feed(ByteBuffer)} as they arrive and {@link #endOfInput()} once
+     * the input is complete. Whenever the fed bytes do not hold a complete
+     * token, {@link #next()} returns {@link Event#NEED_MORE_INPUT} instead of
+     * blocking; calling it again after feeding continues where it stopped.
+     */
+    public static JsonParser nonBlocking() {
+        return new JsonParser(new JsonScanner());
+    }
+
+    /**
+     * Appends the remaining bytes of {@code chunk} to a non-blocking parser
+     * and advances the position of {@code chunk} to its limit.
+     */
+    public void feed(ByteBuffer chunk) {
+        if (!tok.isPushFed()) {
+            throw new IllegalStateException("Parser is not non-blocking");
+        }
+        tok.feed(chunk);
+    }
+
+    /**
+     * Signals that no more bytes will be fed to a non-blocking parser.
+     */
+    public void endOfInput() {
+        if (!tok.isPushFed()) {
+            throw new IllegalStateException("Parser is not non-blocking");
+        }
+        tok.endOfInput();
+    }
+
+    /**
+     * Opens and memory maps {@code path}. The file is closed by
+     * {@link #close()}.
+     */
+    public static JsonParser open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            JsonParser parser = new JsonParser(channel);
+            parser.owned = channel;
+            return parser;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Releases resources opened by the parser itself. Streams, channels and
+     * buffers supplied by the caller are left open.
+     */
+    @Override
+    public void close() throws IOException {
+        if (owned != null) {
+            owned.close();
+            owned = null;
+        }
+    }
+
+    /**
+     * Restarts parsing on a new stream, reusing the parser's working buffer,
+     * decode buffer and state stack, so one parser can be recycled across
+     * many documents. Any input the parser was reading is abandoned (but not
+     * closed), and a non-blocking parser becomes a blocking one.
+     */
+    public void reset(InputStream is) {
+        tok.reset(is::read);
+        resetState();
+    }
+
+    /**
+     * Restarts parsing on {@code len} bytes of {@code data}, scanned in place;
+     * see {@link #reset(InputStream)}.
+     */
+    public void reset(byte[] data, int off, int len) {
+        tok.reset(data, off, len);
+        resetState();
+    }
+
+    public void reset(byte[] data) {
+        reset(data, 0, data.length);
+    }
+
+    /**
+     * True if {@link #close()} has a resource to release, i.e. the parser
+     * was created by {@link #open(Path)} and not yet closed.
+     */
+    boolean ownsInput() {
+        return owned != null;
+    }
+
+    /**
+     * The scanner; while the current event is a key or string, its current
+     * token holds the raw bytes of that key or string.
+     */
+    JsonScanner scanner() {
+        return tok;
     }
 
     public String sval() {
+        if (sval == null && (currentEvent == Event.KEY_NAME || currentEvent == Event.VALUE_STRING)) {
+            sval = tok.sval();
+        }
         return sval;
     }
 
+    /**
+     * Length in bytes of the raw UTF-8 name of the current key, or -1 if the
+     * name contains escape sequences (or the current event is no key).
+     */
+    public int keyLength() {
+        if (currentEvent != Event.KEY_NAME || tok.escaped()) {
+            return -1;
+        }
+        return tok.tokenEnd() - tok.tokenStart();
+    }
+
+    /**
+     * True if the name of the current key equals the UTF-8 encoded
+     * {@code name}; compares raw bytes without decoding the key unless it
+     * contains escape sequences.
+     */
+    public boolean keyEquals(byte[] name) {
+        if (currentEvent != Event.KEY_NAME) {
+            return false;
+        } else if (tok.escaped()) {
+            return new String(name, StandardCharsets.UTF_8).equals(sval());
+        }
+        byte[] buf = tok.buffer();
+        int start = tok.tokenStart();
+        if (tok.tokenEnd() - start != name.length) {
+            return false;
+        }
+        for (int idx = 0; idx < name.length; idx++) {
+            if (buf[start + idx] != name[idx]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Boxed numeric value of the current event; prefer {@link #doubleValue()}
+     * or {@link #longValue()}, which do not allocate.
+     */
     public Double nval() {
-        return nval;
+        return dval;
+    }
+
+    public double doubleValue() {
+        return dval;
+    }
+
+    /**
+     * Exact value of integral numbers in the range of {@code long}; other
+     * numbers are truncated toward zero.
+     */
+    public long longValue() {
+        return lval;
+    }
+
+    /**
+     * True if the current number was written without a fraction or exponent.
+     */
+    public boolean isIntegral() {
+        return integral;
     }
 
     public boolean bval() {
@@ -77,170 +277,268 @@ public class JsonParser {
         return this.currentEvent;
     }
 
+    /**
+     * Returns the current event to the parser; the next call to
+     * {@link #next()} replays it without scanning the input again.
+     */
     public void pushBack() {
         tok.pushBack();
-        if (undoStateChange != null) {
-            undoStateChange.run();
-            undoStateChange = null;
+        if (undoDepth >= 0) {
+            depth = undoDepth;
+            undoDepth = -1;
         }
     }
 
-    private void advance() throws IOException {
-        int ttype = tok.nextToken();
-        while (ttype == TT_COLON
-                || ttype == TT_COMMA
-                || ttype == TT_EOL) {
-            ttype = tok.nextToken();
-        }
-        tok.pushBack();
-    }
-
     public boolean hasNext() throws IOException {
-        advance();
-        int ttype = tok.nextToken();
-        tok.pushBack();
-
-        if (ttype == StreamTokenizer.TT_EOF) {
-            return false;
-        }
-
-        return true;
+        return tok.peek() != TT_EOF;
     }
 
     public Event next() throws IOException {
-        advance();
+        tok.peek();
         int ttype = tok.nextToken();
+        // popped states stay in the array, so restoring the depth undoes any change
+        undoDepth = depth;
         switch (ttype) {
             case TT_ARRAYBEGIN:
-                stateStack.addLast(PState.IN_ARRAY);
-                undoStateChange = () -> stateStack.removeLast();
-                this.currentEvent = Event.START_ARRAY;
-                return Event.START_ARRAY;
+                push(IN_ARRAY);
+                return this.currentEvent = Event.START_ARRAY;
             case TT_ARRAYEND:
-                assert stateStack.peekLast().equals(PState.IN_ARRAY);
-                stateStack.removeLast();
-                if (stateStack.size() > 0 && stateStack.peekLast().equals(PState.IN_KVP)) {
-                    stateStack.removeLast();
-                    undoStateChange = () -> {
-                        stateStack.addLast(PState.IN_KVP);
-                        stateStack.addLast(PState.IN_ARRAY);
-                    };
-                } else {
-                    undoStateChange = () -> stateStack.addLast(PState.IN_ARRAY);
-                }
-                this.currentEvent = Event.END_ARRAY;
-                return Event.END_ARRAY;
+                assert top() == IN_ARRAY;
+                pop();
+                endValue();
+                return this.currentEvent = Event.END_ARRAY;
             case TT_OBJBEGIN:
-                stateStack.addLast(PState.IN_OBJECT);
-                undoStateChange = () -> stateStack.removeLast();
-                this.currentEvent = Event.START_OBJECT;
-                return Event.START_OBJECT;
+                push(IN_OBJECT);
+                return this.currentEvent = Event.START_OBJECT;
             case TT_OBJEND:
-                assert stateStack.peekLast().equals(PState.IN_OBJECT);
-                stateStack.removeLast();
-                if (stateStack.size() > 0 && stateStack.peekLast().equals(PState.IN_KVP)) {
-                    stateStack.removeLast();
-                    undoStateChange = () -> {
-                        stateStack.addLast(PState.IN_KVP);
-                        stateStack.addLast(PState.IN_OBJECT);
-                    };
-                } else {
-                    undoStateChange = () -> stateStack.addLast(PState.IN_OBJECT);
-                }
-                this.currentEvent = Event.END_OBJECT;
-                return Event.END_OBJECT;
+                assert top() == IN_OBJECT;
+                pop();
+                endValue();
+                return this.currentEvent = Event.END_OBJECT;
             case TT_QUOTE:
-                nval = 0d;
+                setNumber(0d, 0, false);
                 bval = false;
-                sval = tok.sval;
-                PState nestState = stateStack.peekLast();
-                switch (nestState) {
-                    case IN_OBJECT:
-                        stateStack.addLast(PState.IN_KVP);
-                        undoStateChange = () -> stateStack.removeLast();
-                        this.currentEvent = Event.KEY_NAME;
-                        break;
-                    case IN_ARRAY:
-                        this.currentEvent = Event.VALUE_STRING;
-                        break;
-                    case IN_KVP:
-                        this.currentEvent = Event.VALUE_STRING;
-                        stateStack.removeLast();
-                        undoStateChange = () -> stateStack.addLast(PState.IN_KVP);
-                        break;
+                sval = null;
+                if (top() == IN_OBJECT) {
+                    push(IN_KVP);
+                    return this.currentEvent = Event.KEY_NAME;
                 }
-                return this.currentEvent;
-            case TT_COLON:
-                assert stateStack.peekLast().equals(PState.IN_KVP);
-                break;
+                endValue();
+                return this.currentEvent = Event.VALUE_STRING;
             case TT_NUMBER:
-                sval = tok.sval;
-                bval = tok.nval != 0;
-                nval = tok.nval;
-                if (stateStack.peekLast().equals(PState.IN_KVP)) {
-                    stateStack.removeLast();
-                    undoStateChange = () -> stateStack.addLast(PState.IN_KVP);
-                }
-                this.currentEvent = Event.VALUE_NUMBER;
-                return Event.VALUE_NUMBER;
+                sval = null;
+                setNumber(tok.dval(), tok.lval(), tok.integral());
+                bval = dval != 0;
+                endValue();
+                return this.currentEvent = Event.VALUE_NUMBER;
             case TT_WORD:
-                String wordVal = tok.sval.toLowerCase();
-                assert stateStack.peekLast().equals(PState.IN_KVP) || stateStack.peekLast().equals(PState.IN_ARRAY);
-                switch (wordVal) {
-                    case "false":
-                        nval = 0d;
+                assert top() != IN_OBJECT;
+                endValue();
+                switch (tok.word()) {
+                    case JsonScanner.WORD_FALSE:
+                        setNumber(0d, 0, false);
                         sval = "false";
                         bval = false;
-                        if (stateStack.peekLast().equals(PState.IN_KVP)) {
-                            stateStack.removeLast();
-                            undoStateChange = () -> stateStack.addLast(PState.IN_KVP);
-                        }
-                        this.currentEvent = Event.VALUE_FALSE;
-                        return Event.VALUE_FALSE;
-                    case "true":
-                        nval = 1d;
+                        return this.currentEvent = Event.VALUE_FALSE;
+                    case JsonScanner.WORD_TRUE:
+                        setNumber(1d, 1, false);
                         sval = "true";
                         bval = true;
-                        if (stateStack.peekLast().equals(PState.IN_KVP)) {
-                            stateStack.removeLast();
-                            undoStateChange = () -> stateStack.addLast(PState.IN_KVP);
-                        }
-                        this.currentEvent = Event.VALUE_TRUE;
-                        return Event.VALUE_TRUE;
-                    case "null":
-                        nval = Double.NaN;
+                        return this.currentEvent = Event.VALUE_TRUE;
+                    case JsonScanner.WORD_NULL:
+                        setNumber(Double.NaN, 0, false);
                         sval = "null";
                         bval = false;
-                        if (stateStack.size() > 0 && stateStack.peekLast().equals(PState.IN_KVP)) {
-                            stateStack.removeLast();
-                            undoStateChange = () -> stateStack.addLast(PState.IN_KVP);
-                        }
-                        this.currentEvent = Event.VALUE_NULL;
-                        return this.currentEvent;
+                        return this.currentEvent = Event.VALUE_NULL;
                     default:
-                        System.out.println(tok);
-                        if (stateStack.size() > 0 && stateStack.peekLast().equals(PState.IN_KVP)) {
-                            stateStack.removeLast();
-                            undoStateChange = () -> stateStack.addLast(PState.IN_KVP);
-                        }
-                        this.currentEvent = Event.VALUE_NULL;
-                        return this.currentEvent;
+                        setNumber(Double.NaN, 0, false);
+                        sval = null;
+                        bval = false;
+                        return this.currentEvent = Event.VALUE_NULL;
                 }
-
+            case JsonScanner.TT_NEED_MORE:
+                undoDepth = -1;
+                return this.currentEvent = Event.NEED_MORE_INPUT;
             default:
                 this.currentEvent = null;
                 return null;
         }
+    }
+
+    /**
+     * Consumes the next value without producing events for its contents.
+     * Objects and arrays are skipped by matching brackets on the raw input,
+     * and no strings are decoded. Returns the event that started the value;
+     * afterwards the current event is the matching end event for objects
+     * and arrays. A skipped value cannot be pushed back.
+     *
+     * A non-blocking parser returns {@link Event#NEED_MORE_INPUT} if the
+     * value is incomplete; calling again after feeding resumes the skip.
+     * Returns null if the input ends before the value is complete.
+     */
+    public Event skipValue() throws IOException {
+        if (skipEvent == null) {
+            Event event = next();
+            if (event != Event.START_OBJECT && event != Event.START_ARRAY) {
+                undoDepth = -1;
+                return event;
+            }
+            skipEvent = event;
+            tok.beginSkip();
+        }
+        int c = tok.skipContainer();
+        if (c == JsonScanner.TT_NEED_MORE) {
+            return this.currentEvent = Event.NEED_MORE_INPUT;
+        } else if (c == TT_EOF) {
+            skipEvent = null;
+            undoDepth = -1;
+            return this.currentEvent = null;
+        }
+        Event event = skipEvent;
+        skipEvent = null;
+        pop();
+        endValue();
+        undoDepth = -1;
+        this.currentEvent = event == Event.START_OBJECT ? Event.END_OBJECT : Event.END_ARRAY;
+        return event;
+    }
+
+    /**
+     * Consumes the rest of the innermost open object or array on raw bytes,
+     * like {@link #skipValue()}, and returns its end event. Must be called
+     * after a complete member or element. Returns null at the end of the
+     * input, and {@link Event#NEED_MORE_INPUT} if a non-blocking parser ran
+     * out of input.
+     */
+    Event skipRest() throws IOException {
+        boolean object = top() == IN_OBJECT;
+        tok.beginSkip();
+        int c = tok.skipContainer();
+        undoDepth = -1;
+        if (c == JsonScanner.TT_NEED_MORE) {
+            return this.currentEvent = Event.NEED_MORE_INPUT;
+        } else if (c == TT_EOF) {
+            return this.currentEvent = null;
+        }
+        pop();
+        endValue();
+        return this.currentEvent = object ? Event.END_OBJECT : Event.END_ARRAY;
+    }
+
+    /**
+     * Consumes the next value like {@link #skipValue()} and returns a view of
+     * its raw bytes, which is only valid until the parser is used again.
+     * Returns null if a non-blocking parser needs more input; calling again
+     * after feeding resumes the capture. Also returns null if the input ends
+     * before the value is complete, so truncated values are never returned.
+     */
+    public ByteBuffer captureValue() throws IOException {
+        if (!capturing) {
+            if (tok.peek() == JsonScanner.TT_NEED_MORE) {
+                return null;
+            }
+            tok.mark();
+            capturing = true;
+        }
+        Event event = skipValue();
+        if (event == Event.NEED_MORE_INPUT) {
+            return null;
+        }
+        capturing = false;
+        if (event == null) {
+            tok.clearMark();
+            return null;
+        }
+        int start = tok.markStart();
+        tok.clearMark();
+        return ByteBuffer.wrap(tok.buffer(), start, tok.position() - start).slice();
+    }
+
+    /**
+     * Consumes the input up to the next newline and returns a view of the
+     * line without its terminator, valid until the parser is used again, or
+     * null at the end of the input.
+     */
+    ByteBuffer nextLine() throws IOException {
+        resetState();
+        int end = tok.scanLine();
+        int start = tok.markStart();
+        tok.clearMark();
+        if (end < 0) {
+            return null;
+        }
+        return ByteBuffer.wrap(tok.buffer(), start, end - start).slice();
+    }
+
+    /**
+     * Discards the rest of the current line and forgets the nesting state,
+     * so parsing can continue with the next line after malformed input.
+     */
+    void recover() throws IOException {
+        resetState();
+        tok.skipLine();
+    }
+
+    private void resetState() {
+        depth = 0;
+        undoDepth = -1;
+        skipEvent = null;
+        capturing = false;
+        currentEvent = null;
+        sval = null;
+        setNumber(0d, 0, false);
+        bval = false;
+    }
+
+    /**
+     * Number of objects, arrays and pending key/value pairs that are open.
+     */
+    int depth() {
+        return depth;
+    }
+
+    /**
+     * Returns the first byte of the next token without consuming it; see
+     * {@link JsonScanner#peek()}.
+     */
+    int peekToken() throws IOException {
+        return tok.peek();
+    }
+
+    private void push(byte state) {
+        if (depth == stateStack.length) {
+            stateStack = Arrays.copyOf(stateStack, depth << 1);
+        }
+        stateStack[depth++] = state;
+    }
 
-        this.currentEvent = null;
+    private void pop() {
+        if (depth > 0) {
+            depth--;
+        }
+    }
 
-        return null;
+    private int top() {
+        return depth > 0 ? stateStack[depth - 1] : 0;
+    }
+
+    private void endValue() {
+        if (top() == IN_KVP) {
+            depth--;
+        }
+    }
+
+    private void setNumber(double dval, long lval, boolean integral) {
+        this.dval = dval;
+        this.lval = lval;
+        this.integral = integral;
     }
 
     public static enum Event {
         END_ARRAY,
         END_OBJECT,
         KEY_NAME,
+        NEED_MORE_INPUT,
         START_ARRAY,
         START_OBJECT,
         VALUE_FALSE,
@@ -250,10 +548,8 @@ public class JsonParser {
         VALUE_TRUE
     }
 
-    private static enum PState {
-        IN_ARRAY,
-        IN_OBJECT,
-        IN_KVP
-    }
+    private static final byte IN_ARRAY = 1;
+    private static final byte IN_OBJECT = 2;
+    private static final byte IN_KVP = 3;
 
 }
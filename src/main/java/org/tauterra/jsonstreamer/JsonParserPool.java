@@ -0,0 +1,106 @@
+/*
+ * Copyright 2018 Nicholas Folse <https://github.com/NF1198>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tauterra.jsonstreamer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.tauterra.jsonstreamer.JsonObjectBuilder.JsonObjectParserException;
+
+/**
+ * Bounded, thread-safe pool of reusable parsers.
+ *
+ * {@link #acquire(InputStream)} hands out an idle parser reset to the given
+ * stream (or a new one if none is idle), and {@link #release(JsonParser)}
+ * returns it. At most {@code capacity} idle parsers are kept; surplus
+ * parsers are left to the garbage collector, so the pool never blocks. Idle
+ * parsers are held in a lock-free queue whose size is bounded by an atomic
+ * counter, so acquiring and releasing never take a lock.
+ *
+ * @author Nicholas Folse <https://github.com/NF1198>
+ */
+public class JsonParserPool {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final ConcurrentLinkedQueue<JsonParser> idle = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+    private final int capacity;
+
+    public JsonParserPool(int capacity) {
+        this.capacity = Math.max(1, capacity);
+    }
+
+    private JsonParser poll() {
+        JsonParser parser = idle.poll();
+        if (parser != null) {
+            idleCount.decrementAndGet();
+        }
+        return parser;
+    }
+
+    public JsonParser acquire(InputStream is) {
+        JsonParser parser = poll();
+        if (parser == null) {
+            return new JsonParser(is);
+        }
+        parser.reset(is);
+        return parser;
+    }
+
+    public JsonParser acquire(byte[] data, int off, int len) {
+        JsonParser parser = poll();
+        if (parser == null) {
+            return new JsonParser(data, off, len);
+        }
+        parser.reset(data, off, len);
+        return parser;
+    }
+
+    /**
+     * Returns {@code parser} to the pool. The parser lets go of its input,
+     * so the stream or array it was reading is not kept reachable. Parsers
+     * that still own an open file are not pooled.
+     */
+    public void release(JsonParser parser) {
+        if (parser.ownsInput()) {
+            return;
+        }
+        if (idleCount.incrementAndGet() > capacity) {
+            idleCount.decrementAndGet();
+            return;
+        }
+        parser.reset(EMPTY, 0, 0);
+        idle.offer(parser);
+    }
+
+    /**
+     * Parses one object from {@code is} with a pooled parser.
+     */
+    public <U> U parseObject(InputStream is, JsonObjectBuilder<U> builder) throws IOException, JsonObjectParserException {
+        JsonParser parser = acquire(is);
+        try {
+            return builder.parseObject(parser);
+        } finally {
+            release(parser);
+        }
+    }
+
+    public int idleCount() {
+        return idleCount.get();
+    }
+}
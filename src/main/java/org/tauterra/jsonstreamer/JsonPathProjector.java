@@ -0,0 +1,319 @@
+/*
+ * Copyright 2018 Nicholas Folse <https://github.com/NF1198>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tauterra.jsonstreamer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import org.tauterra.jsonstreamer.JsonObjectBuilder.JsonObjectParserException;
+import org.tauterra.jsonstreamer.JsonParser.Event;
+
+/**
+ * Extracts a few values from a large document by path.
+ *
+ * Paths are JSON Pointers ({@code /store/items/0/price}) or dotted paths
+ * ({@code store.items.0.price}); numeric segments also select array
+ * elements, and a {@code *} segment matches any key or element. The
+ * registered paths form a tree that is walked along with the document:
+ * members and elements that cannot lead to a registered path are skipped
+ * on raw bytes without being tokenized, and handlers fire only for matches.
+ * A key that matches both a named segment and {@code *} follows both paths;
+ * if both end in a handler for the same value, the one registered last wins.
+ *
+ * @author Nicholas Folse <https://github.com/NF1198>
+ * @param <U> type of the object the handlers populate
+ */
+public class JsonPathProjector<U> {
+
+    private final Supplier<U> supplier;
+    private final List<Path<U>> paths = new ArrayList<>();
+    private Node<U> root = null;
+
+    public JsonPathProjector(Supplier<U> supplier) {
+        this.supplier = supplier;
+    }
+
+    public JsonPathProjector<U> stringHandler(String path, BiConsumer<U, String> handler) {
+        return add(path, node -> node.stringHandler = handler);
+    }
+
+    public JsonPathProjector<U> numberHandler(String path, BiConsumer<U, Double> handler) {
+        return add(path, node -> node.numberHandler = handler);
+    }
+
+    public JsonPathProjector<U> booleanHandler(String path, BiConsumer<U, Boolean> handler) {
+        return add(path, node -> node.booleanHandler = handler);
+    }
+
+    /**
+     * Parses the object found at {@code path} with {@code builder}.
+     */
+    @SuppressWarnings("unchecked")
+    public <V> JsonPathProjector<U> objectHandler(String path, JsonObjectBuilder<V> builder, BiConsumer<U, V> handler) {
+        return add(path, node -> {
+            node.objectBuilder = builder;
+            node.objectHandler = (BiConsumer<U, Object>) handler;
+        });
+    }
+
+    private JsonPathProjector<U> add(String path, Consumer<Node<U>> handler) {
+        paths.add(new Path<>(segments(path), handler));
+        root = null;
+        return this;
+    }
+
+    /**
+     * Reads one object or array from {@code parser} and returns a new target
+     * populated by the handlers of the paths found in it.
+     */
+    public U parse(JsonParser parser) throws IOException, JsonObjectParserException {
+        if (root == null) {
+            root = build(paths, 0);
+        }
+        U result = supplier.get();
+        Event event = JsonObjectBuilder.next(parser);
+        if (event != Event.START_OBJECT && event != Event.START_ARRAY) {
+            throw new JsonObjectParserException("Expected object or array start (line: " + parser.line() + ")");
+        }
+        parser.pushBack();
+        value(parser, root, result);
+        return result;
+    }
+
+    private void value(JsonParser parser, Node<U> node, U target) throws IOException, JsonObjectParserException {
+        Event event = JsonObjectBuilder.next(parser);
+        switch (event) {
+            case START_OBJECT:
+                if (node.objectBuilder != null) {
+                    parser.pushBack();
+                    node.objectHandler.accept(target, node.objectBuilder.parseObject(parser));
+                } else if (node.hasChildren()) {
+                    members(parser, node, target);
+                } else {
+                    parser.pushBack();
+                    skip(parser);
+                }
+                break;
+            case START_ARRAY:
+                if (node.hasChildren()) {
+                    elements(parser, node, target);
+                } else {
+                    parser.pushBack();
+                    skip(parser);
+                }
+                break;
+            case VALUE_STRING:
+                if (node.stringHandler != null) {
+                    node.stringHandler.accept(target, parser.sval());
+                }
+                break;
+            case VALUE_NUMBER:
+                if (node.numberHandler != null) {
+                    node.numberHandler.accept(target, parser.nval());
+                }
+                break;
+            case VALUE_FALSE:
+            case VALUE_TRUE:
+                if (node.booleanHandler != null) {
+                    node.booleanHandler.accept(target, parser.bval());
+                }
+                break;
+            case VALUE_NULL:
+                if (node.numberHandler != null) {
+                    node.numberHandler.accept(target, null);
+                } else if (node.stringHandler != null) {
+                    node.stringHandler.accept(target, null);
+                } else if (node.booleanHandler != null) {
+                    node.booleanHandler.accept(target, null);
+                }
+                break;
+            default:
+                throw new JsonObjectParserException("Unexpected " + event + " (line: " + parser.line() + ")");
+        }
+    }
+
+    private void members(JsonParser parser, Node<U> node, U target) throws IOException, JsonObjectParserException {
+        for (;;) {
+            Event event = JsonObjectBuilder.next(parser);
+            if (event == Event.END_OBJECT) {
+                return;
+            } else if (event != Event.KEY_NAME) {
+                throw new JsonObjectParserException("Expected key (line: " + parser.line() + ")");
+            }
+            Node<U> child = node.member(parser.sval());
+            if (child == null) {
+                skip(parser);
+            } else {
+                value(parser, child, target);
+            }
+        }
+    }
+
+    private void elements(JsonParser parser, Node<U> node, U target) throws IOException, JsonObjectParserException {
+        for (int index = 0;; index++) {
+            if (JsonObjectBuilder.next(parser) == Event.END_ARRAY) {
+                return;
+            }
+            parser.pushBack();
+            Node<U> child = node.element(index);
+            if (child == null) {
+                skip(parser);
+            } else {
+                value(parser, child, target);
+            }
+        }
+    }
+
+    private static void skip(JsonParser parser) throws IOException, JsonObjectParserException {
+        Event event = parser.skipValue();
+        if (event == null || event == Event.NEED_MORE_INPUT) {
+            throw new JsonObjectParserException("Unexpected input (line: " + parser.line() + ")");
+        }
+    }
+
+    /**
+     * Builds the node reached by {@code paths} after {@code depth} segments.
+     * Paths through a {@code *} segment are also routed into every named
+     * sibling, so that lookups never need to consult more than one child.
+     */
+    private static <U> Node<U> build(List<Path<U>> paths, int depth) {
+        Node<U> node = new Node<>();
+        Map<String, List<Path<U>>> named = new HashMap<>();
+        List<Path<U>> wild = new ArrayList<>();
+        for (Path<U> path : paths) {
+            if (path.segments.size() == depth) {
+                node.clear();
+                path.handler.accept(node);
+                continue;
+            }
+            String segment = path.segments.get(depth);
+            if (segment.equals("*")) {
+                wild.add(path);
+                for (List<Path<U>> sibling : named.values()) {
+                    sibling.add(path);
+                }
+            } else if (!named.containsKey(segment)) {
+                List<Path<U>> routed = new ArrayList<>(wild);
+                routed.add(path);
+                named.put(segment, routed);
+            } else {
+                named.get(segment).add(path);
+            }
+        }
+        for (Map.Entry<String, List<Path<U>>> entry : named.entrySet()) {
+            node.put(entry.getKey(), build(entry.getValue(), depth + 1));
+        }
+        if (!wild.isEmpty()) {
+            node.any = build(wild, depth + 1);
+        }
+        return node;
+    }
+
+    static List<String> segments(String path) {
+        List<String> segments = new ArrayList<>();
+        if (path.startsWith("/")) {
+            for (String segment : path.substring(1).split("/", -1)) {
+                segments.add(segment.replace("~1", "/").replace("~0", "~"));
+            }
+        } else if (!path.isEmpty()) {
+            for (String segment : path.split("\\.", -1)) {
+                segments.add(segment);
+            }
+        }
+        if (segments.isEmpty()) {
+            throw new IllegalArgumentException("Empty path");
+        }
+        return segments;
+    }
+
+    private static final class Path<U> {
+
+        final List<String> segments;
+        final Consumer<Node<U>> handler;
+
+        Path(List<String> segments, Consumer<Node<U>> handler) {
+            this.segments = segments;
+            this.handler = handler;
+        }
+    }
+
+    private static final class Node<U> {
+
+        Map<String, Node<U>> members = null;
+        Map<Integer, Node<U>> elements = null;
+        Node<U> any = null;
+
+        BiConsumer<U, String> stringHandler = null;
+        BiConsumer<U, Double> numberHandler = null;
+        BiConsumer<U, Boolean> booleanHandler = null;
+        BiConsumer<U, Object> objectHandler = null;
+        JsonObjectBuilder<?> objectBuilder = null;
+
+        Node<U> clear() {
+            stringHandler = null;
+            numberHandler = null;
+            booleanHandler = null;
+            objectHandler = null;
+            objectBuilder = null;
+            return this;
+        }
+
+        boolean hasChildren() {
+            return members != null || any != null;
+        }
+
+        void put(String segment, Node<U> child) {
+            if (members == null) {
+                members = new HashMap<>();
+            }
+            members.put(segment, child);
+            int index = index(segment);
+            if (index >= 0) {
+                if (elements == null) {
+                    elements = new HashMap<>();
+                }
+                elements.put(index, child);
+            }
+        }
+
+        Node<U> member(String key) {
+            Node<U> child = members != null ? members.get(key) : null;
+            return child != null ? child : any;
+        }
+
+        Node<U> element(int index) {
+            Node<U> child = elements != null ? elements.get(index) : null;
+            return child != null ? child : any;
+        }
+
+        private static int index(String segment) {
+            if (segment.isEmpty() || segment.length() > 9 || (segment.length() > 1 && segment.charAt(0) == '0')) {
+                return -1;
+            }
+            for (int idx = 0; idx < segment.length(); idx++) {
+                if (segment.charAt(idx) < '0' || segment.charAt(idx) > '9') {
+                    return -1;
+                }
+            }
+            return Integer.parseInt(segment);
+        }
+    }
+}
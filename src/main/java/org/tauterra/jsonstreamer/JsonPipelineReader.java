@@ -0,0 +1,203 @@
+/*
+ * Copyright 2018 Nicholas Folse <https://github.com/NF1198>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tauterra.jsonstreamer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import org.tauterra.jsonstreamer.JsonObjectBuilder.JsonObjectParserException;
+
+/**
+ * Overlaps reading a top-level array with building its elements.
+ *
+ * The calling thread reads the array from any parser (streams included),
+ * and only delimits the elements: each element is stepped over on raw bytes
+ * and copied into a compact batch buffer. Full batches are parsed into
+ * objects by the {@link JsonObjectBuilder} on an {@link Executor}, such as a
+ * thread pool or, on newer JVMs, a virtual-thread-per-task executor. At most
+ * {@link #queueCapacity(int)} batches are in flight; when that many are
+ * pending, reading waits for the oldest (or, unordered, any) batch to
+ * complete. Elements are handed to the element handler on the calling
+ * thread, in input order unless {@link #ordered(boolean)} is turned off.
+ *
+ * Useful when the handlers (validation, conversion) are more expensive than
+ * tokenizing; for arrays in memory or in files, {@link JsonParallelReader}
+ * also splits the scanning.
+ *
+ * @author Nicholas Folse <https://github.com/NF1198>
+ * @param <U> type of the objects produced by the builder
+ */
+public class JsonPipelineReader<U> {
+
+    public static final int DEFAULT_BATCH_SIZE = 1 << 16;
+
+    private final JsonObjectBuilder<U> builder;
+    private Executor executor = ForkJoinPool.commonPool();
+    private int queueCapacity = Runtime.getRuntime().availableProcessors() * 4;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private boolean ordered = true;
+
+    private final ConcurrentLinkedQueue<JsonParser> idleParsers = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<byte[]> idleBuffers = new ConcurrentLinkedQueue<>();
+
+    public JsonPipelineReader(JsonObjectBuilder<U> builder) {
+        this.builder = builder;
+    }
+
+    public JsonPipelineReader<U> executor(Executor executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * Maximum number of batches read ahead of the element handler.
+     */
+    public JsonPipelineReader<U> queueCapacity(int queueCapacity) {
+        this.queueCapacity = Math.max(1, queueCapacity);
+        return this;
+    }
+
+    /**
+     * Approximate number of input bytes per batch.
+     */
+    public JsonPipelineReader<U> batchSize(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+        return this;
+    }
+
+    /**
+     * If true (the default) elements are delivered in input order; otherwise
+     * batches are delivered as soon as they are built.
+     */
+    public JsonPipelineReader<U> ordered(boolean ordered) {
+        this.ordered = ordered;
+        return this;
+    }
+
+    /**
+     * Reads the array at the parser's position. Elements that are not
+     * objects are delivered as null, like in
+     * {@link JsonObjectBuilder#parseArrayOf}.
+     */
+    public void parseArrayOf(JsonParser parser, Consumer<U> elementHandler) throws IOException, JsonObjectParserException {
+        new Run(elementHandler).execute(parser);
+    }
+
+    /**
+     * Input bytes of one batch, in a buffer that is recycled once parsed.
+     */
+    private static final class Batch {
+
+        byte[] data;
+        int length = 0;
+    }
+
+    private final class Run {
+
+        private final JsonBatchExecutor<U> batches;
+
+        Run(Consumer<U> elementHandler) {
+            this.batches = new JsonBatchExecutor<>(executor, queueCapacity, ordered, elementHandler);
+        }
+
+        void execute(JsonParser parser) throws IOException, JsonObjectParserException {
+            try {
+                read(parser);
+                batches.finish();
+            } finally {
+                batches.cancel();
+            }
+        }
+
+        private void read(JsonParser parser) throws IOException, JsonObjectParserException {
+            if (JsonObjectBuilder.next(parser) != JsonParser.Event.START_ARRAY) {
+                throw new JsonObjectParserException("Expected array start");
+            }
+            Batch batch = newBatch();
+            for (;;) {
+                int c = parser.peekToken();
+                if (c == JsonParser.TT_ARRAYEND) {
+                    JsonObjectBuilder.next(parser);
+                    break;
+                } else if (c == JsonParser.TT_EOF || c == JsonScanner.TT_NEED_MORE) {
+                    throw new JsonObjectParserException("Unterminated array (line: " + parser.line() + ")");
+                }
+                ByteBuffer value = parser.captureValue();
+                if (value == null) {
+                    throw new JsonObjectParserException("Incomplete element (line: " + parser.line() + ")");
+                }
+                append(batch, value);
+                if (batch.length >= batchSize) {
+                    submit(batch);
+                    batch = newBatch();
+                }
+                batches.deliverCompleted();
+            }
+            if (batch.length > 0) {
+                submit(batch);
+            } else {
+                idleBuffers.offer(batch.data);
+            }
+        }
+
+        private Batch newBatch() {
+            Batch batch = new Batch();
+            byte[] data = idleBuffers.poll();
+            batch.data = data != null ? data : new byte[batchSize + (batchSize >>> 2)];
+            return batch;
+        }
+
+        /**
+         * Copies an element into the batch, followed by a space so that
+         * adjacent scalars stay apart.
+         */
+        private void append(Batch batch, ByteBuffer value) {
+            int n = value.remaining();
+            if (batch.data.length - batch.length < n + 1) {
+                batch.data = Arrays.copyOf(batch.data, Math.max(batch.data.length << 1, batch.length + n + 1));
+            }
+            value.get(batch.data, batch.length, n);
+            batch.length += n;
+            batch.data[batch.length++] = ' ';
+        }
+
+        private void submit(Batch batch) throws IOException, JsonObjectParserException {
+            batches.submit(() -> build(batch));
+        }
+
+        private List<U> build(Batch batch) throws IOException, JsonObjectParserException {
+            JsonParser parser = idleParsers.poll();
+            if (parser == null) {
+                parser = new JsonParser(batch.data, 0, batch.length);
+            } else {
+                parser.reset(batch.data, 0, batch.length);
+            }
+            try {
+                return JsonBatchExecutor.parseElements(builder, parser);
+            } finally {
+                parser.reset(batch.data, 0, 0);
+                idleParsers.offer(parser);
+                idleBuffers.offer(batch.data);
+                batch.data = null;
+            }
+        }
+    }
+}
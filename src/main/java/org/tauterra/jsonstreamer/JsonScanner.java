@@ -0,0 +1,943 @@
+/*
+ * Copyright 2018 Nicholas Folse <https://github.com/NF1198>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tauterra.jsonstreamer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Hand-written tokenizer that works directly on UTF-8 encoded bytes.
+ *
+ * Tokens are reported as spans into a reusable byte buffer; strings are only
+ * decoded when {@link #sval()} is requested. The token type codes match the
+ * {@code TT_*} constants of {@link JsonParser}.
+ *
+ * @author Nicholas Folse <https://github.com/NF1198>
+ */
+final class JsonScanner {
+
+    static final int DEFAULT_BUFFER_SIZE = 8192;
+    static final int MAPPED_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Returned by a push-fed scanner when a token is incomplete; the scanner
+     * is rewound to the start of the token.
+     */
+    static final int TT_NEED_MORE = -4;
+
+    static final int WORD_OTHER = 0;
+    static final int WORD_TRUE = 1;
+    static final int WORD_FALSE = 2;
+    static final int WORD_NULL = 3;
+
+    private Input in;
+    private boolean pushFed;
+    private byte[] buf;
+    private byte[] own;
+    private int pos = 0;
+    private int limit = 0;
+    private int pin = 0;
+    private int mark = -1;
+    private boolean eof = false;
+    private boolean starved = false;
+    private int lineno = 1;
+
+    private int ttype = JsonParser.TT_EOF;
+    private int rawStart = 0;
+    private int tokStart = 0;
+    private int tokEnd = 0;
+    private boolean escaped = false;
+    private int word = WORD_OTHER;
+    private double dval = 0d;
+    private long lval = 0;
+    private boolean integral = false;
+    private String sval = null;
+    private boolean pushedBack = false;
+    private char[] chars = new char[64];
+
+    private int skipDepth = 0;
+    private boolean skipInString = false;
+    private boolean skipEscape = false;
+    private JsonStructuralIndex index = null;
+
+    JsonScanner(InputStream in) {
+        this(in::read, DEFAULT_BUFFER_SIZE);
+    }
+
+    JsonScanner(Input in, int bufferSize) {
+        this.in = in;
+        this.pushFed = false;
+        this.buf = this.own = new byte[Math.max(16, bufferSize)];
+    }
+
+    /**
+     * Creates a push-fed scanner; input is supplied with
+     * {@link #feed(ByteBuffer)} and {@link #endOfInput()}.
+     */
+    JsonScanner() {
+        this.in = null;
+        this.pushFed = true;
+        this.buf = this.own = new byte[DEFAULT_BUFFER_SIZE];
+    }
+
+    /**
+     * Scans {@code len} bytes of {@code data} in place. The array is never
+     * copied or modified.
+     */
+    JsonScanner(byte[] data, int off, int len) {
+        this.in = null;
+        this.pushFed = false;
+        this.buf = data;
+        this.pos = off;
+        this.pin = off;
+        this.limit = off + len;
+        this.eof = true;
+    }
+
+    int lineno() {
+        return lineno;
+    }
+
+    int ttype() {
+        return ttype;
+    }
+
+    double dval() {
+        return dval;
+    }
+
+    long lval() {
+        return lval;
+    }
+
+    boolean integral() {
+        return integral;
+    }
+
+    int word() {
+        return word;
+    }
+
+    String sval() {
+        if (sval == null) {
+            switch (ttype) {
+                case JsonParser.TT_QUOTE:
+                    sval = escaped ? decodeEscaped(tokStart, tokEnd) : decode(tokStart, tokEnd);
+                    break;
+                case JsonParser.TT_NUMBER:
+                case JsonParser.TT_WORD:
+                    sval = new String(buf, tokStart, tokEnd - tokStart, StandardCharsets.ISO_8859_1);
+                    break;
+                default:
+                    break;
+            }
+        }
+        return sval;
+    }
+
+    void pushBack() {
+        if (ttype != JsonParser.TT_EOF && ttype != TT_NEED_MORE) {
+            pushedBack = true;
+        }
+    }
+
+    boolean isPushFed() {
+        return pushFed;
+    }
+
+    /**
+     * Appends the remaining bytes of {@code chunk} to a push-fed scanner.
+     */
+    void feed(ByteBuffer chunk) {
+        if (eof) {
+            throw new IllegalStateException("Input already ended");
+        }
+        int n = chunk.remaining();
+        compact();
+        if (buf.length - limit < n) {
+            byte[] grown = new byte[Math.max(buf.length << 1, limit + n)];
+            System.arraycopy(buf, 0, grown, 0, limit);
+            buf = own = grown;
+        }
+        chunk.get(buf, limit, n);
+        limit += n;
+    }
+
+    void endOfInput() {
+        eof = true;
+    }
+
+    /**
+     * Retains the input from the start of the next token (or of the pushed
+     * back token) until {@link #clearMark()}; call after {@link #peek()}.
+     */
+    void mark() {
+        mark = pushedBack ? rawStart : pos;
+    }
+
+    void clearMark() {
+        mark = -1;
+    }
+
+    int markStart() {
+        return mark;
+    }
+
+    int position() {
+        return pos;
+    }
+
+    byte[] buffer() {
+        return buf;
+    }
+
+    /**
+     * Start of the current token in {@link #buffer()}; for strings, of the
+     * bytes between the quotes.
+     */
+    int tokenStart() {
+        return tokStart;
+    }
+
+    int tokenEnd() {
+        return tokEnd;
+    }
+
+    /**
+     * True if the current string token contains escape sequences.
+     */
+    boolean escaped() {
+        return escaped;
+    }
+
+    /**
+     * Skips whitespace, commas and colons and returns the first byte of the
+     * next token (or the type of a pushed back token) without consuming it.
+     */
+    int peek() throws IOException {
+        if (pushedBack) {
+            return ttype;
+        }
+        for (;;) {
+            if (pos >= limit && !fill()) {
+                return starved() ? TT_NEED_MORE : JsonParser.TT_EOF;
+            }
+            int c = buf[pos];
+            switch (c) {
+                case '\n':
+                    lineno++;
+                    pos++;
+                    break;
+                case ' ':
+                case '\t':
+                case '\r':
+                case ',':
+                case ':':
+                    pos++;
+                    break;
+                default:
+                    if (c >= 0 && c < ' ') {
+                        pos++;
+                        break;
+                    }
+                    return c & 0xFF;
+            }
+        }
+    }
+
+    int nextToken() throws IOException {
+        if (pushedBack) {
+            pushedBack = false;
+            return ttype;
+        }
+        sval = null;
+        escaped = false;
+        word = WORD_OTHER;
+        pin = pos;
+        int c;
+        for (;;) {
+            if (pos >= limit) {
+                pin = pos;
+                if (!fill()) {
+                    rawStart = tokStart = tokEnd = pos;
+                    return ttype = starved() ? TT_NEED_MORE : JsonParser.TT_EOF;
+                }
+            }
+            c = buf[pos];
+            if (c == '\n') {
+                lineno++;
+            } else if (c > ' ' || c < 0) {
+                break;
+            }
+            pos++;
+        }
+        pin = pos;
+        rawStart = tokStart = pos;
+        final int startLine = lineno;
+        ttype = scanToken(c);
+        if (starved()) {
+            // incomplete token in push-fed input; rescan once more bytes arrive
+            pos = rawStart;
+            lineno = startLine;
+            tokStart = tokEnd = pos;
+            ttype = TT_NEED_MORE;
+        }
+        return ttype;
+    }
+
+    private int scanToken(int c) throws IOException {
+        switch (c) {
+            case '"':
+                scanString();
+                return JsonParser.TT_QUOTE;
+            case '-':
+            case '0':
+            case '1':
+            case '2':
+            case '3':
+            case '4':
+            case '5':
+            case '6':
+            case '7':
+            case '8':
+            case '9':
+                if (scanNumber()) {
+                    return JsonParser.TT_NUMBER;
+                }
+                pos = tokStart + 1;
+                tokEnd = pos;
+                return c;
+            default:
+                if (isWordStart(c)) {
+                    scanWord();
+                    return JsonParser.TT_WORD;
+                }
+                pos++;
+                tokEnd = pos;
+                return c & 0xFF;
+        }
+    }
+
+    private boolean starved() {
+        if (starved) {
+            starved = false;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Marks and consumes the input up to and including the next newline.
+     * Returns the end of the line (the line starts at {@link #markStart()}),
+     * or -1 if the input is exhausted.
+     */
+    int scanLine() throws IOException {
+        pushedBack = false;
+        mark = pos;
+        for (;;) {
+            if (pos >= limit) {
+                pin = pos;
+                if (!fill()) {
+                    return pos > mark ? pos : -1;
+                }
+            }
+            if (buf[pos++] == '\n') {
+                lineno++;
+                return pos - 1;
+            }
+        }
+    }
+
+    /**
+     * Discards the input up to and including the next newline.
+     */
+    void skipLine() throws IOException {
+        pushedBack = false;
+        for (;;) {
+            if (pos >= limit) {
+                pin = pos;
+                if (!fill()) {
+                    return;
+                }
+            }
+            if (buf[pos++] == '\n') {
+                lineno++;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Points the scanner at {@code len} bytes of {@code data}, scanned in
+     * place. The working and decode buffers are kept for later resets.
+     */
+    void reset(byte[] data, int off, int len) {
+        in = null;
+        pushFed = false;
+        buf = data;
+        pos = pin = off;
+        limit = off + len;
+        resetInput(true);
+    }
+
+    /**
+     * Points the scanner at a new input, reusing its working buffer.
+     */
+    void reset(Input input) {
+        in = input;
+        pushFed = false;
+        if (own == null) {
+            own = new byte[DEFAULT_BUFFER_SIZE];
+        }
+        buf = own;
+        pos = pin = limit = 0;
+        resetInput(false);
+    }
+
+    private void resetInput(boolean eof) {
+        this.eof = eof;
+        mark = -1;
+        starved = false;
+        lineno = 1;
+        clearToken();
+    }
+
+    private void clearToken() {
+        ttype = JsonParser.TT_EOF;
+        rawStart = tokStart = tokEnd = pos;
+        pushedBack = false;
+        sval = null;
+        escaped = false;
+        word = WORD_OTHER;
+        skipDepth = 0;
+    }
+
+    /**
+     * Starts skipping an object or array whose opening bracket was the last
+     * token; see {@link #skipContainer()}.
+     */
+    void beginSkip() {
+        skipDepth = 1;
+        skipInString = false;
+        skipEscape = false;
+    }
+
+    /**
+     * Skips to the bracket closing the container passed to
+     * {@link #beginSkip()}, matching brackets on raw bytes. Strings are
+     * stepped over (honoring escapes) without being decoded. Returns the
+     * closing bracket, which becomes the current token, {@code TT_EOF}, or
+     * {@code TT_NEED_MORE} if push-fed input ran out; in that case calling
+     * again resumes where the scan stopped.
+     */
+    int skipContainer() throws IOException {
+        int c = JsonParser.TT_EOF;
+        while (skipDepth > 0) {
+            if (limit - pos >= JsonStructuralIndex.BLOCK) {
+                c = skipBlock();
+                continue;
+            }
+            if (pos >= limit) {
+                pin = pos;
+                if (!fill()) {
+                    if (starved()) {
+                        return ttype = TT_NEED_MORE;
+                    }
+                    c = JsonParser.TT_EOF;
+                    skipDepth = 0;
+                    break;
+                }
+            }
+            c = buf[pos++];
+            if (skipInString) {
+                if (skipEscape) {
+                    skipEscape = false;
+                } else if (c == '\\') {
+                    skipEscape = true;
+                } else if (c == '"') {
+                    skipInString = false;
+                }
+                continue;
+            }
+            switch (c) {
+                case '"':
+                    skipInString = true;
+                    break;
+                case '{':
+                case '[':
+                    skipDepth++;
+                    break;
+                case '}':
+                case ']':
+                    skipDepth--;
+                    break;
+                case '\n':
+                    lineno++;
+                    break;
+                default:
+                    break;
+            }
+        }
+        pushedBack = false;
+        sval = null;
+        escaped = false;
+        word = WORD_OTHER;
+        rawStart = tokStart = c == JsonParser.TT_EOF ? pos : pos - 1;
+        tokEnd = pos;
+        return ttype = c;
+    }
+
+    /**
+     * Skips the next 64 bytes, or up to the bracket closing the skipped
+     * container, by walking the bracket bits of the block's structural
+     * masks. Returns the last byte consumed.
+     */
+    private int skipBlock() {
+        JsonStructuralIndex idx = index();
+        idx.reset(skipInString, skipEscape);
+        idx.classify(idx.words(buf), pos);
+        long brackets = idx.open | idx.close;
+        long consumed = -1L;
+        while (brackets != 0) {
+            long bit = brackets & -brackets;
+            brackets ^= bit;
+            if ((idx.open & bit) != 0) {
+                skipDepth++;
+            } else if (--skipDepth == 0) {
+                consumed = bit | (bit - 1);
+                break;
+            }
+        }
+        lineno += Long.bitCount(idx.newlines & ~idx.inString & consumed);
+        pos += 64 - Long.numberOfLeadingZeros(consumed);
+        skipInString = idx.inStringCarry();
+        skipEscape = idx.escapeCarry();
+        return buf[pos - 1];
+    }
+
+    private JsonStructuralIndex index() {
+        if (index == null) {
+            index = new JsonStructuralIndex();
+        }
+        return index;
+    }
+
+    private static boolean isWordStart(int c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c < 0;
+    }
+
+    private static boolean isWordPart(int c) {
+        return isWordStart(c) || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    private void scanString() throws IOException {
+        pos++;
+        for (;;) {
+            if (limit - pos >= 8) {
+                pos = JsonStructuralIndex.indexOfStringEnd(index().words(buf), pos, limit);
+            }
+            if (pos >= limit && !fill()) {
+                // unterminated string; report what we have
+                tokStart++;
+                tokEnd = pos;
+                return;
+            }
+            int c = buf[pos];
+            if (c == '"') {
+                tokStart++;
+                tokEnd = pos;
+                pos++;
+                return;
+            } else if (c == '\\') {
+                escaped = true;
+                pos++;
+                if (pos >= limit && !fill()) {
+                    continue;
+                }
+            } else if (c == '\n') {
+                lineno++;
+            }
+            pos++;
+        }
+    }
+
+    private boolean scanNumber() throws IOException {
+        long mantissa = 0;
+        boolean neg = false;
+        boolean digits = false;
+        boolean seenDot = false;
+        boolean truncated = false;
+        int decexp = 0;
+        int dropped = 0;
+        if (buf[pos] == '-') {
+            neg = true;
+            pos++;
+        }
+        for (;;) {
+            if (pos >= limit && !fill()) {
+                break;
+            }
+            int c = buf[pos];
+            if (c >= '0' && c <= '9') {
+                int d = c - '0';
+                digits = true;
+                if (mantissa < 922337203685477580L || (mantissa == 922337203685477580L && d <= 7)) {
+                    mantissa = mantissa * 10 + d;
+                    if (seenDot) {
+                        decexp++;
+                    }
+                } else {
+                    truncated = true;
+                    if (!seenDot) {
+                        dropped++;
+                    }
+                }
+            } else if (c == '.' && !seenDot) {
+                seenDot = true;
+            } else {
+                break;
+            }
+            pos++;
+        }
+        if (!digits) {
+            return false;
+        }
+        int exp = 0;
+        boolean seenExp = false;
+        if (pos < limit || fill()) {
+            int c = buf[pos];
+            if (c == 'e' || c == 'E') {
+                seenExp = true;
+                pos++;
+                boolean expNeg = false;
+                if ((pos < limit || fill()) && (buf[pos] == '+' || buf[pos] == '-')) {
+                    expNeg = buf[pos] == '-';
+                    pos++;
+                }
+                while ((pos < limit || fill()) && buf[pos] >= '0' && buf[pos] <= '9') {
+                    if (exp < 100000) {
+                        exp = exp * 10 + (buf[pos] - '0');
+                    }
+                    pos++;
+                }
+                exp = expNeg ? -exp : exp;
+            }
+        }
+        tokEnd = pos;
+        integral = !seenDot && !seenExp;
+        int exp10 = exp - decexp + dropped;
+        if (mantissa == 0) {
+            dval = neg ? -0d : 0d;
+            lval = 0;
+        } else if (integral && !truncated) {
+            lval = neg ? -mantissa : mantissa;
+            dval = (double) lval;
+        } else {
+            dval = toDouble(mantissa, exp10, truncated);
+            dval = neg ? -dval : dval;
+            lval = (long) dval;
+        }
+        return true;
+    }
+
+    private static final double[] POW10 = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /**
+     * Converts {@code mantissa * 10^exp10} to the nearest double. Mantissas
+     * up to 2^53 with exponents in [-22, 22] are exact with a single
+     * multiply or divide (both operands are exactly representable); all other
+     * cases defer to {@link Double#parseDouble(String)} on the token text.
+     */
+    private double toDouble(long mantissa, int exp10, boolean truncated) {
+        if (!truncated && mantissa <= (1L << 53)) {
+            if (exp10 >= 0 && exp10 <= 22) {
+                return mantissa * POW10[exp10];
+            } else if (exp10 < 0 && exp10 >= -22) {
+                return mantissa / POW10[-exp10];
+            }
+        }
+        String text = new String(buf, tokStart, tokEnd - tokStart, StandardCharsets.ISO_8859_1);
+        try {
+            return Math.abs(Double.parseDouble(text));
+        } catch (NumberFormatException e) {
+            // lenient input such as "1e"
+            return mantissa * Math.pow(10, exp10);
+        }
+    }
+
+    private void scanWord() throws IOException {
+        pos++;
+        while ((pos < limit || fill()) && isWordPart(buf[pos])) {
+            pos++;
+        }
+        tokEnd = pos;
+        word = matchWord(tokStart, tokEnd - tokStart);
+        dval = 0d;
+        lval = 0;
+        integral = false;
+    }
+
+    private int matchWord(int start, int len) {
+        if (len == 4) {
+            int c0 = buf[start] | 0x20, c1 = buf[start + 1] | 0x20, c2 = buf[start + 2] | 0x20, c3 = buf[start + 3] | 0x20;
+            if (c0 == 't' && c1 == 'r' && c2 == 'u' && c3 == 'e') {
+                return WORD_TRUE;
+            }
+            if (c0 == 'n' && c1 == 'u' && c2 == 'l' && c3 == 'l') {
+                return WORD_NULL;
+            }
+        } else if (len == 5) {
+            if ((buf[start] | 0x20) == 'f' && (buf[start + 1] | 0x20) == 'a' && (buf[start + 2] | 0x20) == 'l'
+                    && (buf[start + 3] | 0x20) == 's' && (buf[start + 4] | 0x20) == 'e') {
+                return WORD_FALSE;
+            }
+        }
+        return WORD_OTHER;
+    }
+
+    /**
+     * Reads more input into the buffer, discarding bytes before {@code pin}.
+     * The buffer grows if the pinned region already fills it.
+     */
+    private boolean fill() throws IOException {
+        if (eof) {
+            return false;
+        }
+        if (in == null) {
+            starved = true;
+            return false;
+        }
+        compact();
+        if (limit == buf.length) {
+            byte[] grown = new byte[buf.length << 1];
+            System.arraycopy(buf, 0, grown, 0, limit);
+            buf = own = grown;
+        }
+        int n;
+        do {
+            n = in.read(buf, limit, buf.length - limit);
+        } while (n == 0);
+        if (n < 0) {
+            eof = true;
+            return false;
+        }
+        limit += n;
+        return true;
+    }
+
+    /**
+     * Moves the retained part of the buffer (from the pin or the mark,
+     * whichever is earlier) to the front.
+     */
+    private void compact() {
+        int keep = mark >= 0 ? Math.min(pin, mark) : pin;
+        if (keep > 0) {
+            System.arraycopy(buf, keep, buf, 0, limit - keep);
+            limit -= keep;
+            pos -= keep;
+            pin -= keep;
+            rawStart -= keep;
+            tokStart -= keep;
+            tokEnd -= keep;
+            if (mark >= 0) {
+                mark -= keep;
+            }
+        }
+    }
+
+    private String decode(int start, int end) {
+        for (int p = start; p < end; p++) {
+            if (buf[p] < 0) {
+                return new String(buf, start, end - start, StandardCharsets.UTF_8);
+            }
+        }
+        return new String(buf, start, end - start, StandardCharsets.ISO_8859_1);
+    }
+
+    private String decodeEscaped(int start, int end) {
+        if (chars.length < end - start) {
+            chars = new char[end - start];
+        }
+        final char[] out = chars;
+        int n = 0;
+        int p = start;
+        while (p < end) {
+            int b = buf[p++];
+            if (b == '\\') {
+                if (p >= end) {
+                    break;
+                }
+                int e = buf[p++];
+                switch (e) {
+                    case 'b':
+                        out[n++] = '\b';
+                        break;
+                    case 'f':
+                        out[n++] = '\f';
+                        break;
+                    case 'n':
+                        out[n++] = '\n';
+                        break;
+                    case 'r':
+                        out[n++] = '\r';
+                        break;
+                    case 't':
+                        out[n++] = '\t';
+                        break;
+                    case 'u':
+                        int cp = 0;
+                        int digits = 0;
+                        while (digits < 4 && p < end) {
+                            int h = hexValue(buf[p]);
+                            if (h < 0) {
+                                break;
+                            }
+                            cp = (cp << 4) | h;
+                            p++;
+                            digits++;
+                        }
+                        out[n++] = digits == 4 ? (char) cp : '\uFFFD';
+                        break;
+                    default:
+                        out[n++] = (char) e;
+                        break;
+                }
+            } else if (b >= 0) {
+                out[n++] = (char) b;
+            } else {
+                int cp;
+                int extra;
+                if ((b & 0xE0) == 0xC0) {
+                    cp = b & 0x1F;
+                    extra = 1;
+                } else if ((b & 0xF0) == 0xE0) {
+                    cp = b & 0x0F;
+                    extra = 2;
+                } else if ((b & 0xF8) == 0xF0) {
+                    cp = b & 0x07;
+                    extra = 3;
+                } else {
+                    out[n++] = '\uFFFD';
+                    continue;
+                }
+                while (extra > 0 && p < end && (buf[p] & 0xC0) == 0x80) {
+                    cp = (cp << 6) | (buf[p++] & 0x3F);
+                    extra--;
+                }
+                if (extra > 0) {
+                    out[n++] = '\uFFFD';
+                } else if (cp >= 0x10000) {
+                    out[n++] = Character.highSurrogate(cp);
+                    out[n++] = Character.lowSurrogate(cp);
+                } else {
+                    out[n++] = (char) cp;
+                }
+            }
+        }
+        return new String(out, 0, n);
+    }
+
+    private static int hexValue(int c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        c |= 0x20;
+        if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        return -1;
+    }
+
+    /**
+     * Source of raw bytes; same contract as {@link InputStream#read(byte[], int, int)}.
+     */
+    @FunctionalInterface
+    static interface Input {
+
+        int read(byte[] b, int off, int len) throws IOException;
+    }
+
+    /**
+     * Reads the remaining bytes of a buffer with bulk gets.
+     */
+    static final class BufferInput implements Input {
+
+        private final ByteBuffer buffer;
+
+        BufferInput(ByteBuffer buffer) {
+            this.buffer = buffer.duplicate();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+    }
+
+    /**
+     * Reads a file channel through a sliding window of read-only memory
+     * mappings, so files larger than 2 GB can be parsed.
+     */
+    static final class MappedInput implements Input {
+
+        static final long DEFAULT_WINDOW_SIZE = 1L << 28;
+
+        private final FileChannel channel;
+        private final long windowSize;
+        private final long end;
+        private long position;
+        private MappedByteBuffer window = null;
+
+        MappedInput(FileChannel channel) throws IOException {
+            this(channel, channel.position(), channel.size(), DEFAULT_WINDOW_SIZE);
+        }
+
+        MappedInput(FileChannel channel, long position, long end, long windowSize) {
+            this.channel = channel;
+            this.position = position;
+            this.end = end;
+            this.windowSize = Math.max(1, Math.min(windowSize, Integer.MAX_VALUE));
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (window == null || !window.hasRemaining()) {
+                if (position >= end) {
+                    return -1;
+                }
+                long size = Math.min(windowSize, end - position);
+                window = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+                position += size;
+            }
+            int n = Math.min(len, window.remaining());
+            window.get(b, off, n);
+            return n;
+        }
+    }
+
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2018 Nicholas Folse <https://github.com/NF1198>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tauterra.jsonstreamer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import org.tauterra.jsonstreamer.JsonObjectBuilder.JsonObjectParserException;
+
+/**
+ * Reads a sequence of top-level objects from one input, such as
+ * newline-delimited JSON (NDJSON) logs or concatenated documents.
+ *
+ * All records are read through the same parser, so its buffers are reused
+ * from one record to the next. In {@link #lineDelimited(boolean)} mode each
+ * line is parsed on its own (in place, by a single reused line parser), which
+ * confines a malformed record to its line; with
+ * {@link #skipMalformed(boolean)} such records are reported and skipped
+ * instead of aborting the whole input.
+ *
+ * @author Nicholas Folse <https://github.com/NF1198>
+ * @param <U> type of the objects produced by the builder
+ */
+public class JsonSequenceReader<U> {
+
+    private final JsonObjectBuilder<U> builder;
+    private final JsonParser parser;
+    private final JsonParser lineParser = new JsonParser(new byte[0]);
+    private boolean lineDelimited = false;
+    private boolean skipMalformed = false;
+    private BiConsumer<Long, JsonObjectParserException> malformedHandler = null;
+    private long line = 0;
+    private long records = 0;
+    private long skipped = 0;
+
+    public JsonSequenceReader(JsonObjectBuilder<U> builder, JsonParser parser) {
+        this.builder = builder;
+        this.parser = parser;
+    }
+
+    /**
+     * Treats every non-blank line as exactly one record (NDJSON).
+     */
+    public JsonSequenceReader<U> lineDelimited(boolean lineDelimited) {
+        this.lineDelimited = lineDelimited;
+        return this;
+    }
+
+    /**
+     * Skips malformed records and keeps reading. Outside of line-delimited
+     * mode the reader resumes after the line on which the error was found.
+     */
+    public JsonSequenceReader<U> skipMalformed(boolean skipMalformed) {
+        this.skipMalformed = skipMalformed;
+        return this;
+    }
+
+    /**
+     * Receives the line number and the error of every skipped record.
+     */
+    public JsonSequenceReader<U> malformedHandler(BiConsumer<Long, JsonObjectParserException> handler) {
+        this.malformedHandler = handler;
+        return this;
+    }
+
+    public long recordCount() {
+        return records;
+    }
+
+    public long skippedCount() {
+        return skipped;
+    }
+
+    /**
+     * Returns the next record, or null at the end of the input.
+     */
+    public U read() throws IOException, JsonObjectParserException {
+        for (;;) {
+            try {
+                U result = lineDelimited ? readLine() : readDocument();
+                if (result != null) {
+                    records++;
+                }
+                return result;
+            } catch (JsonObjectParserException e) {
+                if (!skipMalformed) {
+                    throw e;
+                }
+                skipped++;
+                if (malformedHandler != null) {
+                    malformedHandler.accept(lineDelimited ? line : parser.line(), e);
+                }
+                if (!lineDelimited) {
+                    parser.recover();
+                }
+            }
+        }
+    }
+
+    private U readDocument() throws IOException, JsonObjectParserException {
+        if (!parser.hasNext()) {
+            return null;
+        }
+        U result = builder.parseObject(parser);
+        if (parser.depth() != 0) {
+            throw new JsonObjectParserException("Unterminated object (line: " + parser.line() + ")");
+        }
+        return result;
+    }
+
+    private U readLine() throws IOException, JsonObjectParserException {
+        for (;;) {
+            ByteBuffer record = parser.nextLine();
+            if (record == null) {
+                return null;
+            }
+            line++;
+            lineParser.reset(record.array(), record.arrayOffset(), record.remaining());
+            if (!lineParser.hasNext()) {
+                continue;
+            }
+            U result = builder.parseObject(lineParser);
+            if (lineParser.depth() != 0) {
+                throw new JsonObjectParserException("Unterminated object (line: " + line + ")");
+            }
+            if (lineParser.hasNext()) {
+                throw new JsonObjectParserException("Unexpected input after object (line: " + line + ")");
+            }
+            return result;
+        }
+    }
+
+    public void forEach(Consumer<U> elementHandler) throws IOException, JsonObjectParserException {
+        U element;
+        while ((element = read()) != null) {
+            elementHandler.accept(element);
+        }
+    }
+
+    /**
+     * Returns an iterator over the remaining records. Errors are rethrown as
+     * {@link UncheckedIOException} or {@link IllegalStateException}.
+     */
+    public Iterator<U> iterator() {
+        return new Iterator<U>() {
+            private U next = null;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null) {
+                    try {
+                        next = read();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    } catch (JsonObjectParserException e) {
+                        throw new IllegalStateException(e.getMessage(), e);
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public U next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                U result = next;
+                next = null;
+                return result;
+            }
+        };
+    }
+}
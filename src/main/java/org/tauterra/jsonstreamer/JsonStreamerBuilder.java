@@ -17,6 +17,7 @@ package org.tauterra.jsonstreamer;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.text.DecimalFormat;
 import java.text.MessageFormat;
 import java.util.Map;
@@ -36,6 +37,8 @@ public class JsonStreamerBuilder<T> {
 
     public static int ORDER_UNDEFINED = Integer.MAX_VALUE;
 
+    private static final byte[] NULL = "null".getBytes(StandardCharsets.UTF_8);
+
     private int fieldCount = 0;
 
     public JsonStreamerBuilder() {
@@ -295,123 +298,167 @@ public class JsonStreamerBuilder<T> {
         return this;
     }
 
+    /**
+     * Returns a streamer for the fields registered so far. Each field is
+     * resolved once, here, into a writer with its name already encoded, so
+     * writing an object is a single pass over an array of writers without
+     * map lookups or per-field type tests. Fields registered afterwards do
+     * not affect the returned streamer.
+     */
     public JsonStreamer<T> build() {
-        JsonStreamer<T> result = new JsonStreamer<T>() {
-            @Override
-            public void accept(T obj, OutputStream os, int indent) {
-                accept(obj, os, 0, indent, indent);
-            }
-
-            @Override
-            @SuppressWarnings("unchecked")
-            public void accept(T obj, OutputStream os, int predent, int indent, int indentOffset) {
-                predent = predent < 0 ? 0 : predent;
-                indent = indent < 0 ? 0 : indent;
-                indentOffset = indentOffset < 0 ? 0 : indentOffset;
+        Compiled<T> result = new Compiled<>(tags.size());
+        int idx = 0;
+        for (Map.Entry<FieldKey, Function<T, String>> entry : tags.entrySet()) {
+            result.names[idx] = ("\"" + entry.getKey().tag + "\"").getBytes(StandardCharsets.UTF_8);
+            result.writers[idx++] = writer(entry.getKey(), entry.getValue(), result);
+        }
+        return result;
+    }
 
-                final int size = tags.size();
-                int count = 0;
+    @SuppressWarnings("unchecked")
+    private FieldWriter<T> writer(FieldKey key, Function<T, String> value, JsonStreamer<T> self) {
+        if (RECURSIVETAG.equals(value)) {
+            final Function<T, T> recursiveFun = tagsRecursive.get(key);
+            return (obj, os, indent, indentOffset) -> {
+                T subItem = recursiveFun.apply(obj);
+                if (subItem != null) {
+                    self.accept(subItem, os, indent, indent + indentOffset, indentOffset);
+                } else {
+                    os.write(NULL);
+                }
+            };
+        } else if (OBJTAG.equals(value)) {
+            final JsonStreamer<T> tagObjValue = tagsObj.get(key);
+            return (obj, os, indent, indentOffset) -> tagObjValue.accept(obj, os, indent, indent + indentOffset, indentOffset);
+        } else if (INTARRYTAG.equals(value)) {
+            final Function<T, IntStream> intStreamFun = tagsIntStream.get(key);
+            final String format = tagsStreamFormats.get(key);
+            return (obj, os, indent, indentOffset) -> {
+                DecimalFormat fmt = makeDecimalFormat(format);
+                arrayWriter(intStreamFun.apply(obj).mapToObj((element) -> fmt.format(element)), os, ARRAY_ENDS, join(indent));
+            };
+        } else if (LONGARRYTAG.equals(value)) {
+            final Function<T, LongStream> longStreamFun = tagsLongStream.get(key);
+            final String format = tagsStreamFormats.get(key);
+            return (obj, os, indent, indentOffset) -> {
+                DecimalFormat fmt = makeDecimalFormat(format);
+                arrayWriter(longStreamFun.apply(obj).mapToObj((element) -> fmt.format(element)), os, ARRAY_ENDS, join(indent));
+            };
+        } else if (DOUBLEARRYTAG.equals(value)) {
+            final Function<T, DoubleStream> doubleStreamFun = tagsDoubleStream.get(key);
+            final String format = tagsStreamFormats.get(key);
+            return (obj, os, indent, indentOffset) -> {
+                DecimalFormat fmt = makeDecimalFormat(format);
+                arrayWriter(doubleStreamFun.apply(obj).mapToObj((element) -> fmt.format(element)), os, ARRAY_ENDS, join(indent));
+            };
+        } else if (FLOATARRYTAG.equals(value)) {
+            final Function<T, Stream<Float>> floatStreamFun = tagsFloatStream.get(key);
+            final String format = tagsStreamFormats.get(key);
+            return (obj, os, indent, indentOffset) -> {
+                DecimalFormat fmt = makeDecimalFormat(format);
+                arrayWriter(floatStreamFun.apply(obj).map((element) -> fmt.format(element)), os, ARRAY_ENDS, join(indent));
+            };
+        } else if (BOOLEANARRYTAG.equals(value)) {
+            final Function<T, Stream<Boolean>> booleanStreamFun = tagsBooleanStream.get(key);
+            return (obj, os, indent, indentOffset)
+                    -> arrayWriter(booleanStreamFun.apply(obj).map((element) -> element ? "true" : "false"), os, ARRAY_ENDS, join(indent));
+        } else if (STRINGARRYTAG.equals(value)) {
+            final Function<T, Stream<String>> stringStreamFun = tagsStringStream.get(key);
+            return (obj, os, indent, indentOffset)
+                    -> arrayWriter(stringStreamFun.apply(obj).map(JsonStreamerBuilder::quoted), os, ARRAY_ENDS, join(indent));
+        } else if (OBJARRYTAG.equals(value)) {
+            final Function<T, Stream> objStreamFun = tagsObjectStream.get(key);
+            final JsonStreamer objStreamElementFun = tagsObjectStreamElements.get(key);
+            return (obj, os, indent, indentOffset) -> {
+                final byte[] arryJoin = join(indent);
+                Stream elementGenerator = objStreamFun.apply(obj);
+                boolean[] isMiddle = new boolean[]{false};
                 try {
-                    final byte[] dq = "\"".getBytes();
-                    final byte[] co = (indent == 0) ? ":".getBytes() : ": ".getBytes();
-                    final byte[] com = ",".getBytes();
-                    final byte[] pidt = (predent == 0) ? "".getBytes() : spaces(predent).getBytes();
-                    final byte[] idt = (indent == 0) ? "".getBytes() : spaces(indent).getBytes();
-                    final byte[] nl = (indent == 0) ? "".getBytes() : "\n".getBytes();
-                    final byte[] arryJoin = ((indent == 0) ? "," : ", ").getBytes();
-                    final byte[] arryEnds = "[]".getBytes();
-                    final byte[] nullBytes = "null".getBytes();
-
-                    os.write("{".getBytes());
-                    os.write(nl);
-                    for (Map.Entry<FieldKey, Function<T, String>> entry : tags.entrySet()) {
-                        final FieldKey key = entry.getKey();
-                        final Function<T, String> value = entry.getValue();
-                        os.write(idt);
-                        os.write(dq);
-                        os.write(key.tag.getBytes());
-                        os.write(dq);
-                        os.write(co);
-                        if (RECURSIVETAG.equals(value)) {
-                            T subItem = tagsRecursive.get(key).apply(obj);
-                            if (subItem != null) {
-                                this.accept(subItem, os, indent, indent + indentOffset, indentOffset);
-                            } else {
-                                os.write(nullBytes);
-                            }
-                        } else if (OBJTAG.equals(value)) {
-                            final JsonStreamer<T> tagObjValue = tagsObj.get(key);
-                            tagObjValue.accept(obj, os, indent, indent + indentOffset, indentOffset);
-                        } else if (INTARRYTAG.equals(value)) {
-                            final Function<T, IntStream> intStreamFun = tagsIntStream.get(key);
-                            DecimalFormat fmt = makeDecimalFormat(tagsStreamFormats.get(key));
-                            Stream<String> elementGenerator = intStreamFun.apply(obj).mapToObj((element) -> fmt.format(element));
-                            arrayWriter(elementGenerator, os, arryEnds, arryJoin);
-                        } else if (LONGARRYTAG.equals(value)) {
-                            final Function<T, LongStream> longStreamFun = tagsLongStream.get(key);
-                            DecimalFormat fmt = makeDecimalFormat(tagsStreamFormats.get(key));
-                            Stream<String> elementGenerator = longStreamFun.apply(obj).mapToObj((element) -> fmt.format(element));
-                            arrayWriter(elementGenerator, os, arryEnds, arryJoin);
-                        } else if (DOUBLEARRYTAG.equals(value)) {
-                            final Function<T, DoubleStream> doubleStreamFun = tagsDoubleStream.get(key);
-                            DecimalFormat fmt = makeDecimalFormat(tagsStreamFormats.get(key));
-                            Stream<String> elementGenerator = doubleStreamFun.apply(obj).mapToObj((element) -> fmt.format(element));
-                            arrayWriter(elementGenerator, os, arryEnds, arryJoin);
-                        } else if (FLOATARRYTAG.equals(value)) {
-                            final Function<T, Stream<Float>> floatStreamFun = tagsFloatStream.get(key);
-                            DecimalFormat fmt = makeDecimalFormat(tagsStreamFormats.get(key));
-                            Stream<String> elementGenerator = floatStreamFun.apply(obj).map((element) -> fmt.format(element));
-                            arrayWriter(elementGenerator, os, arryEnds, arryJoin);
-                        } else if (BOOLEANARRYTAG.equals(value)) {
-                            final Function<T, Stream<Boolean>> booleanStreamFun = tagsBooleanStream.get(key);
-                            Stream<String> elementGenerator = booleanStreamFun.apply(obj).map((element) -> element ? "true" : "false");
-                            arrayWriter(elementGenerator, os, arryEnds, arryJoin);
-                        } else if (STRINGARRYTAG.equals(value)) {
-                            final Function<T, Stream<String>> stringStreamFun = tagsStringStream.get(key);
-                            Stream<String> elementGenerator = stringStreamFun.apply(obj).map(JsonStreamerBuilder::quoted);
-                            arrayWriter(elementGenerator, os, arryEnds, arryJoin);
-                        } else if (OBJARRYTAG.equals(value)) {
-                            final Function<T, Stream> objStreamFun = tagsObjectStream.get(key);
-                            final JsonStreamer objStreamElementFun = tagsObjectStreamElements.get(key);
-                            @SuppressWarnings("unchecked")
-                            Stream elementGenerator = objStreamFun.apply(obj);
-                            boolean[] isMiddle = new boolean[]{false};
-                            try {
-                                final int finalPredent = indent+indentOffset;
-                                final int finalIndent = indent+indentOffset;
-                                final int finalIndentOffset = indentOffset;
-                                os.write(arryEnds[0]);
-                                elementGenerator
-                                        .forEach((element) -> {
-                                            //write to OS
-                                            try {
-                                                if (isMiddle[0]) {
-                                                    os.write(arryJoin);
-                                                }
-                                                objStreamElementFun.accept(element, os, finalPredent, finalIndent, finalIndentOffset);
-                                                isMiddle[0] = true;
-                                            } catch (IOException ex) {
-                                            }
-                                        });
-                                os.write(arryEnds[1]);
-                            } catch (IOException e) {
-                            }
-                        } else {
-                            os.write(value.apply(obj).getBytes());
-                        }
-                        if (++count < size) {
-                            os.write(com);
-                            os.write(nl);
-                        }
-                    }
-                    os.write(nl);
-                    os.write(pidt);
-                    os.write("}".getBytes());
+                    final int finalPredent = indent + indentOffset;
+                    final int finalIndent = indent + indentOffset;
+                    final int finalIndentOffset = indentOffset;
+                    os.write(ARRAY_ENDS[0]);
+                    elementGenerator
+                            .forEach((element) -> {
+                                //write to OS
+                                try {
+                                    if (isMiddle[0]) {
+                                        os.write(arryJoin);
+                                    }
+                                    objStreamElementFun.accept(element, os, finalPredent, finalIndent, finalIndentOffset);
+                                    isMiddle[0] = true;
+                                } catch (IOException ex) {
+                                }
+                            });
+                    os.write(ARRAY_ENDS[1]);
                 } catch (IOException e) {
                 }
+            };
+        }
+        return (obj, os, indent, indentOffset) -> os.write(value.apply(obj).getBytes());
+    }
+
+    private static final byte[] ARRAY_ENDS = "[]".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] JOIN = ",".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] JOIN_SPACED = ", ".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] COLON = ":".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] COLON_SPACED = ": ".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] NEWLINE = "\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] EMPTY = new byte[0];
+
+    private static byte[] join(int indent) {
+        return indent == 0 ? JOIN : JOIN_SPACED;
+    }
+
+    /**
+     * Writes the value of one field.
+     */
+    @FunctionalInterface
+    private static interface FieldWriter<T> {
+
+        void write(T obj, OutputStream os, int indent, int indentOffset) throws IOException;
+    }
+
+    private static final class Compiled<T> implements JsonStreamer<T> {
+
+        final byte[][] names;
+        final FieldWriter<T>[] writers;
+
+        @SuppressWarnings("unchecked")
+        Compiled(int size) {
+            this.names = new byte[size][];
+            this.writers = (FieldWriter<T>[]) new FieldWriter<?>[size];
+        }
+
+        @Override
+        public void accept(T obj, OutputStream os, int predent, int indent, int indentOffset) {
+            predent = predent < 0 ? 0 : predent;
+            indent = indent < 0 ? 0 : indent;
+            indentOffset = indentOffset < 0 ? 0 : indentOffset;
+            try {
+                final byte[] co = (indent == 0) ? COLON : COLON_SPACED;
+                final byte[] pidt = (predent == 0) ? EMPTY : spaces(predent).getBytes();
+                final byte[] idt = (indent == 0) ? EMPTY : spaces(indent).getBytes();
+                final byte[] nl = (indent == 0) ? EMPTY : NEWLINE;
+
+                os.write('{');
+                os.write(nl);
+                for (int idx = 0; idx < writers.length; idx++) {
+                    if (idx > 0) {
+                        os.write(JOIN);
+                        os.write(nl);
+                    }
+                    os.write(idt);
+                    os.write(names[idx]);
+                    os.write(co);
+                    writers[idx].write(obj, os, indent, indentOffset);
+                }
+                os.write(nl);
+                os.write(pidt);
+                os.write('}');
+            } catch (IOException e) {
             }
-        };
-        return result;
+        }
     }
 
     private static DecimalFormat makeDecimalFormat(String decimalFormat) {
@@ -445,6 +492,12 @@ public class JsonStreamerBuilder<T> {
         };
     }
 
+    /**
+     * Writes objects of type V as JSON. A streamer returned by
+     * {@link JsonStreamerBuilder#build()} is fixed when it is built: fields
+     * registered on the builder afterwards only appear in streamers built
+     * later.
+     */
     @FunctionalInterface
     public static interface JsonStreamer<V> {
 
@@ -474,6 +527,44 @@ public class JsonStreamerBuilder<T> {
 
     }
 
+    /**
+     * Writes {@code value} as a quoted, escaped JSON string, or {@code null}.
+     */
+    public static void writeString(OutputStream os, String value) throws IOException {
+        if (value == null) {
+            os.write(NULL);
+            return;
+        }
+        StringBuilder sb = new StringBuilder(value.length() + 2).append('"');
+        for (int idx = 0; idx < value.length(); idx++) {
+            char c = value.charAt(idx);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < ' ') {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        os.write(sb.append('"').toString().getBytes(StandardCharsets.UTF_8));
+    }
+
     private static String quoted(Object obj) {
         return obj != null ? MessageFormat.format("\"{0}\"", obj.toString()) : "null";
     }
@@ -0,0 +1,282 @@
+/*
+ * Copyright 2018 Nicholas Folse <https://github.com/NF1198>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tauterra.jsonstreamer;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Locates structural characters eight bytes at a time.
+ *
+ * Input is classified in blocks of 64 bytes, each loaded as eight
+ * little-endian longs. Every character class of interest becomes a 64-bit
+ * mask with one bit per byte, escapes and string interiors are resolved with
+ * carry-less bit arithmetic, and the state needed to continue with the next
+ * block is carried over. Callers either walk the masks of single blocks
+ * ({@link #classify(ByteBuffer, int)}) or collect the offsets of all
+ * structural characters of a buffer into a reusable tape
+ * ({@link #index(byte[], int, int)}).
+ *
+ * @author Nicholas Folse <https://github.com/NF1198>
+ */
+final class JsonStructuralIndex {
+
+    static final int BLOCK = 64;
+
+    private static final long ONES = 0x0101010101010101L;
+    private static final long LOW7 = 0x7F7F7F7F7F7F7F7FL;
+    private static final long GATHER = 0x0102040810204080L;
+
+    private static final long QUOTE = broadcast('"');
+    private static final long BACKSLASH = broadcast('\\');
+    private static final long CASE_BIT = broadcast(0x20);
+    private static final long OPEN = broadcast('{');
+    private static final long CLOSE = broadcast('}');
+    private static final long COMMA = broadcast(',');
+    private static final long COLON = broadcast(':');
+    private static final long SPACE = broadcast(' ');
+    private static final long TAB = broadcast('\t');
+    private static final long NEWLINE = broadcast('\n');
+    private static final long RETURN = broadcast('\r');
+
+    // masks of the last classified block; bit i stands for byte i
+    long quotes;
+    long inString;
+    long open;
+    long close;
+    long commas;
+    long colons;
+    long newlines;
+    long structurals;
+
+    private boolean inStringCarry = false;
+    private boolean escapeCarry = false;
+    private boolean scalarCarry = false;
+
+    private byte[] wordsOf = null;
+    private ByteBuffer words = null;
+    private byte[] pad = null;
+    private ByteBuffer padWords = null;
+    private int[] tape = null;
+    private int count = 0;
+
+    static long broadcast(int c) {
+        return (c & 0xFFL) * ONES;
+    }
+
+    /**
+     * Sets the high bit of every byte of {@code word} that equals the
+     * corresponding byte of {@code pattern}, and clears all other bits.
+     */
+    static long match(long word, long pattern) {
+        long t = word ^ pattern;
+        return ~(((t & LOW7) + LOW7) | t | LOW7);
+    }
+
+    /**
+     * Packs the high bits of the eight bytes of a {@link #match} result into
+     * the low eight bits of the result.
+     */
+    static long gather(long matches) {
+        return ((matches >>> 7) * GATHER) >>> 56;
+    }
+
+    static ByteBuffer littleEndian(byte[] data) {
+        return ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Returns a little-endian view of {@code data}, cached for as long as the
+     * same array is passed in.
+     */
+    ByteBuffer words(byte[] data) {
+        if (wordsOf != data) {
+            words = littleEndian(data);
+            wordsOf = data;
+        }
+        return words;
+    }
+
+    /**
+     * Returns the index of the first quote, backslash or newline in
+     * [from, to), looking at whole words only; if there is none, the index
+     * from which fewer than eight bytes remain.
+     */
+    static int indexOfStringEnd(ByteBuffer words, int from, int to) {
+        int idx = from;
+        while (to - idx >= 8) {
+            long w = words.getLong(idx);
+            long m = match(w, QUOTE) | match(w, BACKSLASH) | match(w, NEWLINE);
+            if (m != 0) {
+                return idx + (Long.numberOfTrailingZeros(m) >>> 3);
+            }
+            idx += 8;
+        }
+        return idx;
+    }
+
+    /**
+     * Sets the state carried into the next block.
+     */
+    void reset(boolean inString, boolean escape) {
+        inStringCarry = inString;
+        escapeCarry = escape;
+        scalarCarry = false;
+    }
+
+    /**
+     * True if the last classified block ended inside a string.
+     */
+    boolean inStringCarry() {
+        return inStringCarry;
+    }
+
+    /**
+     * True if the last classified block ended with an unescaped backslash.
+     */
+    boolean escapeCarry() {
+        return escapeCarry;
+    }
+
+    /**
+     * Classifies the 64 bytes of {@code words} starting at {@code at}.
+     *
+     * Afterwards {@link #inString} covers the opening quote and contents of
+     * every string (but not the closing quote), the bracket, comma and colon
+     * masks only hold characters outside of strings, and
+     * {@link #structurals} holds those characters plus the first byte of
+     * every string and scalar.
+     */
+    void classify(ByteBuffer words, int at) {
+        long q = 0, bs = 0, op = 0, cl = 0, cm = 0, co = 0, ws = 0, nl = 0;
+        for (int k = 0; k < 8; k++) {
+            long w = words.getLong(at + (k << 3));
+            long folded = w | CASE_BIT; // '[' and ']' fold onto '{' and '}'
+            long n = match(w, NEWLINE);
+            int shift = k << 3;
+            q |= gather(match(w, QUOTE)) << shift;
+            bs |= gather(match(w, BACKSLASH)) << shift;
+            op |= gather(match(folded, OPEN)) << shift;
+            cl |= gather(match(folded, CLOSE)) << shift;
+            cm |= gather(match(w, COMMA)) << shift;
+            co |= gather(match(w, COLON)) << shift;
+            nl |= gather(n) << shift;
+            ws |= gather(match(w, SPACE) | match(w, TAB) | match(w, RETURN) | n) << shift;
+        }
+        long escaped = bs == 0 && !escapeCarry ? 0 : escapes(bs);
+        quotes = q & ~escaped;
+        long str = prefixXor(quotes) ^ (inStringCarry ? -1L : 0L);
+        inStringCarry = str < 0;
+        inString = str;
+        long tail = str ^ quotes; // contents and closing quotes
+        long ops = op | cl | cm | co;
+        long scalar = ~(ops | ws);
+        long plain = scalar & ~quotes;
+        long follows = (plain << 1) | (scalarCarry ? 1L : 0L);
+        scalarCarry = plain < 0;
+        open = op & ~str;
+        close = cl & ~str;
+        commas = cm & ~str;
+        colons = co & ~str;
+        newlines = nl;
+        structurals = (ops | (scalar & ~follows)) & ~tail;
+    }
+
+    /**
+     * Returns the mask of bytes preceded by an odd run of backslashes.
+     * Backslashes are rare, so they are resolved one at a time.
+     */
+    private long escapes(long backslashes) {
+        long escaped = escapeCarry ? 1L : 0L;
+        escapeCarry = false;
+        long bits = backslashes;
+        while (bits != 0) {
+            long bit = bits & -bits;
+            bits ^= bit;
+            if ((escaped & bit) == 0) {
+                if (bit < 0) {
+                    escapeCarry = true;
+                } else {
+                    escaped |= bit << 1;
+                }
+            }
+        }
+        return escaped;
+    }
+
+    private static long prefixXor(long x) {
+        x ^= x << 1;
+        x ^= x << 2;
+        x ^= x << 4;
+        x ^= x << 8;
+        x ^= x << 16;
+        x ^= x << 32;
+        return x;
+    }
+
+    /**
+     * Records the offsets of the structural characters of data[from, to) on
+     * the tape, and returns their number.
+     */
+    int index(byte[] data, int from, int to) {
+        reset(false, false);
+        count = 0;
+        if (tape == null) {
+            tape = new int[Math.max(64, (to - from) >>> 2)];
+        }
+        ByteBuffer w = words(data);
+        int at = from;
+        for (; to - at >= BLOCK; at += BLOCK) {
+            classify(w, at);
+            record(at, structurals);
+        }
+        if (at < to) {
+            if (pad == null) {
+                pad = new byte[BLOCK];
+                padWords = littleEndian(pad);
+            }
+            Arrays.fill(pad, (byte) ' ');
+            System.arraycopy(data, at, pad, 0, to - at);
+            classify(padWords, 0);
+            record(at, structurals & ((1L << (to - at)) - 1));
+        }
+        return count;
+    }
+
+    private void record(int base, long bits) {
+        int n = count + Long.bitCount(bits);
+        if (n > tape.length) {
+            tape = Arrays.copyOf(tape, Math.max(n, tape.length * 2));
+        }
+        while (bits != 0) {
+            tape[count++] = base + Long.numberOfTrailingZeros(bits);
+            bits &= bits - 1;
+        }
+    }
+
+    /**
+     * Offsets recorded by the last call to {@link #index}; only the first
+     * {@link #count()} entries are valid.
+     */
+    int[] tape() {
+        return tape;
+    }
+
+    int count() {
+        return count;
+    }
+}
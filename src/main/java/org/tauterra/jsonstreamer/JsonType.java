@@ -0,0 +1,44 @@
+/*
+ * Copyright 2018 Nicholas Folse <https://github.com/NF1198>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tauterra.jsonstreamer;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a class for which the annotation processor of the
+ * {@code processor} module generates a parser and a streamer.
+ *
+ * For a class {@code Point} the processor writes {@code PointJson} into the
+ * same package, with static {@code parseObject}, {@code parseObjectInto},
+ * {@code parseArrayOf} and {@code accept} methods, a {@code STREAMER}
+ * constant and a compiled {@code BUILDER} that can be passed wherever a
+ * {@link JsonObjectBuilder} is expected. Keys are matched on raw bytes and fields are assigned directly,
+ * without handler lambdas. Non-static, non-transient fields are mapped;
+ * they must not be private, and the class needs a no-argument constructor.
+ * Supported field types are primitives, their wrappers, {@code String} and
+ * other {@code @JsonType} classes; members of other types are skipped.
+ *
+ * @author Nicholas Folse <https://github.com/NF1198>
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface JsonType {
+}
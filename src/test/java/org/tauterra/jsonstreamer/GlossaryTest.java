@@ -18,6 +18,8 @@ package org.tauterra.jsonstreamer;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import static org.junit.Assert.*;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -117,6 +119,20 @@ public class GlossaryTest {
         assertTrue(g.glossDiv.glossList.glossEntry.glossDef.glossSeeAlso.contains("XML"));
     }
 
+    @Test
+    public void testGlossaryParserMapped() throws Exception {
+        System.out.println("test JSON parser (mapped file)");
+        Path path = Paths.get(GlossaryJSON.class.getResource("/json/glossary.json").toURI());
+        Glossary g;
+        try (JsonParser parser = JsonParser.open(path)) {
+            g = glossaryParser.parseObject(parser).glossary;
+        }
+        assertEquals("example glossary", g.title);
+        assertEquals("SGML", g.glossDiv.glossList.glossEntry.id);
+        assertEquals("A meta-markup language, used to create markup languages such as DocBook.", g.glossDiv.glossList.glossEntry.glossDef.para);
+        assertTrue(g.glossDiv.glossList.glossEntry.glossDef.glossSeeAlso.contains("XML"));
+    }
+
     @Test
     public void testGlossaryStreamer() throws IOException, JsonObjectBuilder.JsonObjectParserException {
         System.out.println("test JSON streamer");
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2018 Nicholas Folse <https://github.com/NF1198>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tauterra.jsonstreamer;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.tauterra.jsonstreamer.GlossaryJSON.GlossDef;
+import org.tauterra.jsonstreamer.JsonDocument.Type;
+import org.tauterra.jsonstreamer.JsonObjectBuilder.JsonObjectParserException;
+
+/**
+ *
+ * @author Nicholas Folse <https://github.com/NF1198>
+ */
+public class JsonDocumentTest {
+
+    public JsonDocumentTest() {
+    }
+
+    @Test
+    public void testGlossary() throws Exception {
+        System.out.println("JsonDocument Test::glossary");
+        JsonDocument doc;
+        try (InputStream is = GlossaryJSON.class.getResourceAsStream("/json/glossary.json")) {
+            doc = JsonDocument.parse(is);
+        }
+        assertEquals("S", doc.get("glossary").get("GlossDiv").get("title").asString());
+        JsonDocument.Value entry = doc.get("glossary").get("GlossDiv").get("GlossList").get("GlossEntry");
+        assertEquals(Type.OBJECT, entry.type());
+        assertEquals(Arrays.asList("ID", "SortAs", "GlossTerm", "Acronym", "Abbrev", "GlossDef", "GlossSee"), entry.keys());
+        assertEquals(7, entry.size());
+        assertEquals("markup", entry.get("GlossSee").asString());
+        JsonDocument.Value seeAlso = entry.get("GlossDef").get("GlossSeeAlso");
+        assertEquals(Type.ARRAY, seeAlso.type());
+        assertEquals(2, seeAlso.size());
+        assertEquals("XML", seeAlso.get(1).asString());
+        assertEquals(Type.MISSING, seeAlso.get(2).type());
+        assertFalse(entry.get("nope").get("deeper").exists());
+
+        JsonObjectBuilder<GlossDef> defBuilder = new JsonObjectBuilder<>(() -> new GlossDef())
+                .stringHandler("para", (o, v) -> o.para = v)
+                .stringHandler("GlossSeeAlso", (o, v) -> o.glossSeeAlso.add(v));
+        GlossDef def = defBuilder.parseObject(entry.get("GlossDef").parser());
+        assertEquals("A meta-markup language, used to create markup languages such as DocBook.", def.para);
+        assertEquals(Arrays.asList("GML", "XML"), def.glossSeeAlso);
+    }
+
+    @Test
+    public void testScalars() throws Exception {
+        System.out.println("JsonDocument Test::scalars");
+        String json = "[12345678901234, -2.5e-3, true, false, null, \"caf\\u00e9 \\\"q\\\"\", {\"k\\\"ey\": 1, \"é\": 2, \"\": [[], {}]}]";
+        JsonDocument doc = JsonDocument.parse(json.getBytes(StandardCharsets.UTF_8));
+        assertEquals(7, doc.root().size());
+        assertEquals(12345678901234L, doc.get(0).asLong());
+        assertEquals(-2.5e-3, doc.get(1).asDouble(), 0);
+        assertTrue(doc.get(2).asBoolean());
+        assertEquals(Type.FALSE, doc.get(3).type());
+        assertTrue(doc.get(4).isNull());
+        assertEquals("café \"q\"", doc.get(5).asString());
+        assertNull(doc.get(0).asString());
+        JsonDocument.Value obj = doc.get(6);
+        assertEquals(1, obj.get("k\"ey").asLong());
+        assertEquals(2, obj.get("é").asLong());
+        assertEquals(Type.ARRAY, obj.get("").get(0).type());
+        assertEquals(0, obj.get("").get(1).size());
+        assertEquals("{}", obj.get("").get(1).toString());
+        assertEquals("-2.5e-3", doc.get(1).toString());
+    }
+
+    @Test
+    public void testMalformed() throws Exception {
+        System.out.println("JsonDocument Test::malformed");
+        for (String json : new String[]{"{\"a\": [1, 2}", "{\"a\": 1", "{} {}", "   ", "[1]]"}) {
+            try {
+                JsonDocument.parse(json.getBytes(StandardCharsets.UTF_8));
+                fail("Accepted " + json);
+            } catch (JsonObjectParserException expected) {
+            }
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testWrongType() throws Exception {
+        System.out.println("JsonDocument Test::wrongType");
+        JsonDocument.parse("{\"a\": \"x\"}".getBytes(StandardCharsets.UTF_8)).get("a").asDouble();
+    }
+
+}
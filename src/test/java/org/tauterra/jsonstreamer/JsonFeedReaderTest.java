@@ -0,0 +1,173 @@
+/*
+ * Copyright 2018 Nicholas Folse <https://github.com/NF1198>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tauterra.jsonstreamer;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.tauterra.jsonstreamer.GlossaryJSON.Glossary;
+import org.tauterra.jsonstreamer.GlossaryJSON.GlossaryWrapper;
+import org.tauterra.jsonstreamer.JsonObjectBuilder.JsonObjectParserException;
+import org.tauterra.jsonstreamer.JsonParser.Event;
+
+/**
+ *
+ * @author Nicholas Folse <https://github.com/NF1198>
+ */
+public class JsonFeedReaderTest {
+
+    public JsonFeedReaderTest() {
+    }
+
+    private static class Item {
+
+        long id;
+        String name;
+        List<String> tags = new ArrayList<>();
+    }
+
+    final static JsonObjectBuilder<Item> itemBuilder = new JsonObjectBuilder<>(() -> new Item())
+            .numberHandler("id", (o, v) -> o.id = v.longValue())
+            .stringHandler("name", (o, v) -> o.name = v)
+            .stringHandler("tags", (o, v) -> o.tags.add(v));
+
+    @Test
+    public void testNonBlockingParser() throws Exception {
+        System.out.println("JsonFeedReader Test::nonBlockingParser");
+        byte[] bytes = "{\"a\": [12345, \"text\\\"more\", true], \"b\": {\"c\": null}}".getBytes(StandardCharsets.UTF_8);
+        JsonParser parser = JsonParser.nonBlocking();
+        List<Event> events = new ArrayList<>();
+        for (int idx = 0; idx <= bytes.length; idx++) {
+            if (idx < bytes.length) {
+                parser.feed(ByteBuffer.wrap(bytes, idx, 1));
+            } else {
+                parser.endOfInput();
+            }
+            Event event;
+            while (parser.hasNext() && (event = parser.next()) != Event.NEED_MORE_INPUT) {
+                events.add(event);
+                if (event == Event.VALUE_STRING) {
+                    assertEquals("text\"more", parser.sval());
+                } else if (event == Event.VALUE_NUMBER) {
+                    assertEquals(12345L, parser.longValue());
+                }
+            }
+        }
+        List<Event> expected = new ArrayList<>();
+        JsonParser blocking = new JsonParser(bytes);
+        while (blocking.hasNext()) {
+            expected.add(blocking.next());
+        }
+        assertEquals(expected, events);
+    }
+
+    @Test
+    public void testArrayInRandomChunks() throws Exception {
+        System.out.println("JsonFeedReader Test::arrayInRandomChunks");
+        StringBuilder sb = new StringBuilder("[");
+        for (int idx = 0; idx < 500; idx++) {
+            sb.append(idx > 0 ? ",\n" : "").append("{\"id\": ").append(idx)
+                    .append(", \"skip\": {\"x\": [1, \"]}\"]}, \"name\": \"item ").append(idx)
+                    .append("\", \"tags\": [\"t").append(idx).append("\"]}");
+        }
+        sb.append("]");
+        byte[] bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+
+        List<Item> items = new ArrayList<>();
+        JsonFeedReader<Item> reader = new JsonFeedReader<>(itemBuilder, items::add);
+        Random random = new Random(42);
+        int offset = 0;
+        while (offset < bytes.length) {
+            int len = Math.min(bytes.length - offset, 1 + random.nextInt(64));
+            reader.feed(ByteBuffer.wrap(bytes, offset, len));
+            offset += len;
+        }
+        reader.endOfInput();
+        assertTrue(reader.isDone());
+        assertEquals(500, items.size());
+        for (int idx = 0; idx < 500; idx++) {
+            assertEquals(idx, items.get(idx).id);
+            assertEquals("item " + idx, items.get(idx).name);
+            assertEquals("t" + idx, items.get(idx).tags.get(0));
+        }
+    }
+
+    @Test
+    public void testStrayStructuralToken() throws Exception {
+        System.out.println("JsonFeedReader Test::strayStructuralToken");
+        for (String text : new String[]{"[{\"id\": 1}, }, {\"id\": 2}]", "{\"id\": 1} ]", "}"}) {
+            List<Item> items = new ArrayList<>();
+            JsonFeedReader<Item> reader = new JsonFeedReader<>(itemBuilder, items::add);
+            try {
+                reader.feed(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+                reader.endOfInput();
+                fail(text);
+            } catch (JsonObjectParserException e) {
+            }
+            assertTrue(items.size() <= 1);
+            assertFalse(items.contains(null));
+        }
+
+        List<Item> items = new ArrayList<>();
+        JsonFeedReader<Item> reader = new JsonFeedReader<>(itemBuilder, items::add);
+        reader.feed(ByteBuffer.wrap("[{\"id\": 1}, 2, \"x\", null]".getBytes(StandardCharsets.UTF_8)));
+        reader.endOfInput();
+        assertEquals(4, items.size());
+        assertNull(items.get(3));
+    }
+
+    @Test
+    public void testTruncatedValue() throws Exception {
+        System.out.println("JsonFeedReader Test::truncatedValue");
+        for (String text : new String[]{"{\"name\": \"x\", \"tags\": [\"a\"", "[{\"id\": 1}, {\"id\": 2, \"skip\": [1", "[{\"id\": 1}, [1, 2"}) {
+            List<Item> items = new ArrayList<>();
+            JsonFeedReader<Item> reader = new JsonFeedReader<>(itemBuilder, items::add);
+            reader.feed(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+            try {
+                reader.endOfInput();
+                fail(text);
+            } catch (JsonObjectParserException e) {
+            }
+            assertFalse(reader.isDone());
+            assertEquals(text, text.startsWith("[") ? 1 : 0, items.size());
+        }
+    }
+
+    @Test
+    public void testGlossaryByteByByte() throws Exception {
+        System.out.println("JsonFeedReader Test::glossaryByteByByte");
+        GlossaryTest.setup();
+        byte[] bytes = Files.readAllBytes(Paths.get(GlossaryJSON.class.getResource("/json/glossary.json").toURI()));
+        List<GlossaryWrapper> results = new ArrayList<>();
+        JsonFeedReader<GlossaryWrapper> reader = new JsonFeedReader<>(GlossaryTest.glossaryParser, results::add);
+        for (byte b : bytes) {
+            reader.feed(ByteBuffer.wrap(new byte[]{b}));
+        }
+        reader.endOfInput();
+        assertEquals(1, results.size());
+        Glossary g = results.get(0).glossary;
+        assertEquals("example glossary", g.title);
+        assertEquals("ISO 8879:1986", g.glossDiv.glossList.glossEntry.abbrev);
+    }
+
+}
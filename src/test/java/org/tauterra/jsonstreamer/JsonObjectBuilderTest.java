@@ -6,7 +6,11 @@
 package org.tauterra.jsonstreamer;
 
 import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 import org.junit.Test;
@@ -87,6 +91,444 @@ public class JsonObjectBuilderTest {
         System.out.println(simple);
     }
 
+    @Test
+    public void testUnmappedValues() throws Exception {
+        System.out.println("JsonObjectBuilderNG Test::unmappedValues");
+
+        List<String> missing = new ArrayList<>();
+        JsonObjectBuilder<Simple> simpleBuilder = new JsonObjectBuilder<>(() -> new Simple())
+                .stringHandler("foo", (o, v) -> o.foo = v)
+                .numberHandler("bar", (o, v) -> o.bar = v)
+                .stringHandler("sarray", (o, v) -> o.sarray.add(v))
+                .missingElementHandler((o, label, v) -> missing.add(label));
+
+        String text = "{\"unknownObj\": {\"x\": {\"y\": [1, 2]}}, \"foo\": \"kept\", "
+                + "\"unknownAry\": [[1, 2], {\"z\": \"]\"}], \"sarray\": [\"a\", [\"nested\"], \"b\"], \"bar\": 7}";
+        Simple simple = simpleBuilder.parseObject(new JsonParser(text.getBytes()));
+        assertEquals("kept", simple.foo);
+        assertEquals(7.0, simple.bar, 0);
+        assertEquals(3, simple.sarray.size());
+        assertEquals("a", simple.sarray.get(0));
+        assertNull(simple.sarray.get(1));
+        assertEquals("b", simple.sarray.get(2));
+        assertTrue(missing.contains("unknownObj"));
+        assertTrue(missing.contains("unknownAry"));
+    }
+
+    @Test
+    public void testCompile() throws Exception {
+        System.out.println("JsonObjectBuilderNG Test::compile");
+
+        List<String> missing = new ArrayList<>();
+        JsonObjectBuilder<Simple> simpleBuilder = new JsonObjectBuilder<>(() -> new Simple());
+        simpleBuilder.stringHandler("foo", (o, v) -> o.foo = v)
+                .numberHandler("bar", (o, v) -> o.bar = v)
+                .booleanHandler("car", (o, v) -> o.car = v)
+                .stringHandler("sarray", (o, v) -> o.sarray.add(v))
+                .stringHandler("k\"ey", (o, v) -> o.sarray.add("escaped:" + v))
+                .stringHandler("é", (o, v) -> o.sarray.add("utf8:" + v))
+                .objectHandler("nested", simpleBuilder, (o, v) -> o.nested = v)
+                .objectHandler("oarray", simpleBuilder, (o, v) -> o.oarray.add(v))
+                .missingElementHandler((o, label, v) -> missing.add(label));
+        for (int idx = 0; idx < 100; idx++) {
+            simpleBuilder.numberHandler("n" + idx, (o, v) -> o.narray.add(v));
+        }
+        assertSame(simpleBuilder, simpleBuilder.compile());
+        assertTrue(simpleBuilder.isCompiled());
+
+        String text = "{\"foo\": \"a\", \"bar\": null, \"car\": true, \"k\\\"ey\": \"x\", \"\\u00e9\": \"y\", \"é\": \"z\","
+                + " \"nested\": {\"foo\": \"b\", \"nested\": {\"foo\": \"c\"}}, \"n7\": 7, \"n99\": 99, \"n100\": 100,"
+                + " \"foo \": 1, \"fo\": 2, \"oarray\": [{\"foo\": \"d\"}, null], \"car\": \"notBoolean\"}";
+        Simple simple = simpleBuilder.parseObject(new JsonParser(text.getBytes(StandardCharsets.UTF_8)));
+        assertEquals("a", simple.foo);
+        assertNull(simple.bar);
+        assertTrue(simple.car);
+        assertEquals(Arrays.asList("escaped:x", "utf8:y", "utf8:z"), simple.sarray);
+        assertEquals("b", simple.nested.foo);
+        assertEquals("c", simple.nested.nested.foo);
+        assertEquals(Arrays.asList(7d, 99d), simple.narray);
+        assertEquals(2, simple.oarray.size());
+        assertEquals("d", simple.oarray.get(0).foo);
+        assertNull(simple.oarray.get(1));
+        assertEquals(Arrays.asList("n100", "foo ", "fo", "car"), missing);
+
+        try {
+            simpleBuilder.stringHandler("late", (o, v) -> o.foo = v);
+            fail("Compiled builder accepted a handler");
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test
+    public void testPrimitiveHandlers() throws Exception {
+        System.out.println("JsonObjectBuilderNG Test::primitiveHandlers");
+
+        JsonObjectBuilder<TestClass> builder = new JsonObjectBuilder<>(() -> new TestClass());
+        builder.intHandler("anInt", (o, v) -> o.anInt = v)
+                .nullHandler("anInt", o -> o.anInt = -1)
+                .doubleHandler("foo", (o, v) -> o.foo = v)
+                .boolHandler("zenT", (o, v) -> o.zenT = v)
+                .boolHandler("zenF", (o, v) -> o.zenF = v)
+                .intHandler("intAry", (o, v) -> o.intAry.add(v))
+                .nullHandler("intAry", o -> o.intAry.add(null))
+                .longHandler("big", (o, v) -> o.foo = v)
+                .objectHandler("subItem", builder, (o, v) -> o.subItem = v);
+
+        String text = "{\"anInt\": 42, \"foo\": 2.5, \"zenT\": true, \"zenF\": false, \"intAry\": [1, null, \"x\", [2], 3.9],"
+                + " \"subItem\": {\"anInt\": null, \"big\": 9007199254740993}}";
+        TestClass result = builder.parseObject(new JsonParser(text.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(42, result.anInt);
+        assertEquals(2.5, result.foo, 0);
+        assertTrue(result.zenT);
+        assertFalse(result.zenF);
+        assertEquals(Arrays.asList(1, null, null, null, 3), result.intAry);
+        assertEquals(-1, result.subItem.anInt);
+        assertEquals(9007199254740992d, result.subItem.foo, 0);
+
+        builder.removeHandler("anInt");
+        assertFalse(builder.hasHandler("anInt"));
+        result = builder.parseObject(new JsonParser("{\"anInt\": null}".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(0, result.anInt);
+    }
+
+    @Test
+    public void testKeyOrderPrediction() throws Exception {
+        System.out.println("JsonObjectBuilderNG Test::keyOrderPrediction");
+
+        JsonObjectBuilder<SubTest> builder = new JsonObjectBuilder<>(() -> new SubTest())
+                .doubleHandler("foo", (o, v) -> o.foo = v)
+                .doubleHandler("bar", (o, v) -> o.bar = v)
+                .compile();
+        StringBuilder sb = new StringBuilder("[");
+        for (int idx = 0; idx < 100; idx++) {
+            sb.append(idx > 0 ? ", " : "").append("{\"foo\": ").append(idx).append(", \"x\": 0, \"bar\": ").append(-idx).append("}");
+        }
+        sb.append("]");
+        List<SubTest> items = new ArrayList<>();
+        builder.parseArrayOf(new JsonParser(sb.toString().getBytes(StandardCharsets.UTF_8)), items::add);
+        assertEquals(100, items.size());
+        assertEquals(-99, items.get(99).bar, 0);
+        // only the first object's known keys and every unknown "x" miss
+        assertEquals(198, builder.predictionHits());
+        assertEquals(102, builder.predictionMisses());
+
+        builder.parseObject(new JsonParser("{\"bar\": 1, \"foo\": 2}".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(198, builder.predictionHits());
+        assertEquals(104, builder.predictionMisses());
+    }
+
+    @Test
+    public void testLargeDispatchTable() throws Exception {
+        System.out.println("JsonObjectBuilderNG Test::largeDispatchTable");
+
+        for (int keys : new int[]{0, 1, 200, 1000, 5000}) {
+            JsonObjectBuilder<long[]> builder = new JsonObjectBuilder<>(() -> new long[1]);
+            StringBuilder sb = new StringBuilder("{");
+            for (int idx = 0; idx < keys; idx++) {
+                builder.longHandler("metric." + idx, (o, v) -> o[0] += v);
+                sb.append("\"metric.").append(idx).append("\": ").append(idx).append(", ");
+            }
+            sb.append("\"unknown\": 1}");
+            builder.compile();
+            assertTrue(keys + " keys", builder.dispatchTableSize() <= Math.max(2, 4 * keys));
+            long[] sum = builder.parseObject(new JsonParser(sb.toString().getBytes(StandardCharsets.UTF_8)));
+            assertEquals((long) keys * (keys - 1) / 2, sum[0]);
+        }
+    }
+
+    @Test
+    public void testStreamArray() throws Exception {
+        System.out.println("JsonObjectBuilderNG Test::streamArray");
+
+        JsonObjectBuilder<SubTest> builder = new JsonObjectBuilder<>(() -> new SubTest())
+                .doubleHandler("foo", (o, v) -> o.foo = v);
+        List<Double> foos = builder.streamArray(new JsonParser("[{\"foo\": 1}, 2, [3], {\"foo\": 4}]".getBytes(StandardCharsets.UTF_8)))
+                .map(o -> o == null ? null : o.foo)
+                .collect(Collectors.toList());
+        assertEquals(Arrays.asList(1d, null, null, 4d), foos);
+
+        StringBuilder sb = new StringBuilder("[");
+        for (int idx = 0; idx < 100000; idx++) {
+            sb.append(idx > 0 ? ", " : "").append("{\"foo\": ").append(idx).append("}");
+        }
+        sb.append("]");
+        byte[] data = sb.toString().getBytes(StandardCharsets.UTF_8);
+        int[] consumed = new int[1];
+        InputStream counting = new ByteArrayInputStream(data) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                int n = super.read(b, off, len);
+                consumed[0] += Math.max(0, n);
+                return n;
+            }
+        };
+        SubTest found = builder.streamArray(new JsonParser(counting))
+                .filter(o -> o.foo >= 10)
+                .findFirst()
+                .get();
+        assertEquals(10, found.foo, 0);
+        assertTrue(consumed[0] < data.length / 10);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testStreamArrayNotAnArray() throws Exception {
+        System.out.println("JsonObjectBuilderNG Test::streamArrayNotAnArray");
+        new JsonObjectBuilder<>(() -> new SubTest())
+                .streamArray(new JsonParser("{}".getBytes(StandardCharsets.UTF_8)))
+                .count();
+    }
+
+    @Test
+    public void testParseObjectInto() throws Exception {
+        System.out.println("JsonObjectBuilderNG Test::parseObjectInto");
+        int[] created = {0};
+        JsonObjectBuilder<Simple> inner = new JsonObjectBuilder<>(() -> {
+            created[0]++;
+            return new Simple();
+        }).numberHandler("bar", (o, v) -> o.bar = v);
+        JsonObjectBuilder<Simple> outer = new JsonObjectBuilder<>(() -> {
+            created[0]++;
+            return new Simple();
+        }).stringHandler("foo", (o, v) -> o.foo = v)
+                .objectHandler("nested", inner, o -> o.nested, (o, v) -> o.nested = v);
+
+        Simple target = new Simple();
+        for (int idx = 0; idx < 3; idx++) {
+            String json = "{\"foo\": \"f" + idx + "\", \"nested\": {\"bar\": " + idx + "}}";
+            assertSame(target, outer.parseObjectInto(new JsonParser(json.getBytes(StandardCharsets.UTF_8)), target));
+            assertEquals("f" + idx, target.foo);
+            assertEquals(idx, target.nested.bar, 0);
+        }
+        assertEquals(1, created[0]); // only the first nested object is new
+
+        JsonObjectBuilder.Recycler<Simple> recycler = JsonObjectBuilder.Recycler.bounded(2, o -> o.foo = null);
+        outer.recycler(recycler);
+        Simple first = outer.parseObject(new JsonParser("{\"foo\": \"a\"}".getBytes(StandardCharsets.UTF_8)));
+        recycler.recycle(first);
+        assertNull(first.foo);
+        Simple second = outer.parseObject(new JsonParser("{\"foo\": \"b\", \"nested\": {\"bar\": 7}}".getBytes(StandardCharsets.UTF_8)));
+        assertSame(first, second);
+        assertEquals("b", second.foo);
+        assertEquals(7, second.nested.bar, 0);
+        assertEquals(3, created[0]);
+    }
+
+    @Test
+    public void testSharedCompiledBuilder() throws Exception {
+        System.out.println("JsonObjectBuilderNG Test::sharedCompiledBuilder");
+        JsonObjectBuilder<Simple> inner = new JsonObjectBuilder<>(() -> new Simple())
+                .numberHandler("bar", (o, v) -> o.bar = v);
+        JsonObjectBuilder<Simple> builder = new JsonObjectBuilder<>(() -> new Simple())
+                .stringHandler("foo", (o, v) -> o.foo = v)
+                .numberHandler("bar", (o, v) -> o.bar = v)
+                .objectHandler("nested", inner, (o, v) -> o.nested = v)
+                .compile();
+        List<String> failures = Collections.synchronizedList(new ArrayList<>());
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            final int id = t;
+            threads[t] = new Thread(() -> {
+                try {
+                    for (int idx = 0; idx < 2000; idx++) {
+                        String json = (idx & 1) == 0
+                                ? "{\"foo\": \"t" + id + "\", \"bar\": " + idx + ", \"nested\": {\"bar\": " + id + "}}"
+                                : "{\"nested\": {\"bar\": " + id + "}, \"bar\": " + idx + ", \"foo\": \"t" + id + "\"}";
+                        Simple s = builder.parseObject(new JsonParser(json.getBytes(StandardCharsets.UTF_8)));
+                        if (!("t" + id).equals(s.foo) || s.bar != idx || s.nested.bar != id) {
+                            failures.add(json);
+                        }
+                    }
+                } catch (Exception e) {
+                    failures.add(e.toString());
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(Collections.emptyList(), failures);
+
+        // every thread learns the key order on its own, so the totals are
+        // exactly eight times those of a single thread
+        JsonObjectBuilder<Simple> single = new JsonObjectBuilder<>(() -> new Simple())
+                .stringHandler("foo", (o, v) -> o.foo = v)
+                .numberHandler("bar", (o, v) -> o.bar = v)
+                .objectHandler("nested", inner, (o, v) -> o.nested = v)
+                .compile();
+        for (int idx = 0; idx < 2000; idx++) {
+            String json = (idx & 1) == 0
+                    ? "{\"foo\": \"t\", \"bar\": 0, \"nested\": {\"bar\": 0}}"
+                    : "{\"nested\": {\"bar\": 0}, \"bar\": 0, \"foo\": \"t\"}";
+            single.parseObject(new JsonParser(json.getBytes(StandardCharsets.UTF_8)));
+        }
+        assertEquals(8 * 2000 * 3, builder.predictionHits() + builder.predictionMisses());
+        assertEquals(8 * single.predictionHits(), builder.predictionHits());
+        assertEquals(8 * single.predictionMisses(), builder.predictionMisses());
+        assertEquals(9 * 2000, inner.predictionHits() + inner.predictionMisses());
+    }
+
+    @Test
+    public void testTerminalFields() throws Exception {
+        System.out.println("JsonObjectBuilderNG Test::terminalFields");
+        int[] nested = {0};
+        JsonObjectBuilder<Simple> inner = new JsonObjectBuilder<>(() -> new Simple())
+                .numberHandler("bar", (o, v) -> nested[0]++);
+        JsonObjectBuilder<Simple> builder = new JsonObjectBuilder<>(() -> new Simple())
+                .stringHandler("foo", (o, v) -> o.foo = v)
+                .numberHandler("bar", (o, v) -> o.bar = v)
+                .objectHandler("nested", inner, (o, v) -> o.nested = v)
+                .terminalFields("foo", "bar");
+        String json = "[{\"bar\": 1, \"x\": [1, {}], \"foo\": \"a\", \"nested\": {\"bar\": 2, \"s\": \"}]\\\"\"}, \"y\": 3},"
+                + " {\"foo\": \"b\", \"bar\": null, \"foo\": \"c\"}, {\"foo\": \"d\"}]";
+        List<Simple> results = new ArrayList<>();
+        builder.parseArrayOf(new JsonParser(json.getBytes(StandardCharsets.UTF_8)), results::add);
+        assertEquals(3, results.size());
+        assertEquals("a", results.get(0).foo);
+        assertEquals(1, results.get(0).bar, 0);
+        assertNull(results.get(0).nested);
+        assertEquals(0, nested[0]);
+        assertEquals("b", results.get(1).foo); // stopped before the second "foo"
+        assertEquals("d", results.get(2).foo);
+    }
+
+    @Test
+    public void testRawHandlers() throws Exception {
+        System.out.println("JsonObjectBuilderNG Test::rawHandlers");
+        String json = "{\"foo\": \"a\", \"ext\" : {\"k\": [1, \"}\"]} , \"bar\": 2,"
+                + " \"unknown\": [true, {\"x\": null}], \"other\": \"s\\\"\"}";
+        List<String> raw = new ArrayList<>();
+        Simple simple = new JsonObjectBuilder<>(() -> new Simple())
+                .stringHandler("foo", (o, v) -> o.foo = v)
+                .numberHandler("bar", (o, v) -> o.bar = v)
+                .rawHandler("ext", (o, v) -> raw.add("ext=" + StandardCharsets.UTF_8.decode(v)))
+                .missingRawHandler((o, label, v) -> raw.add(label + "=" + StandardCharsets.UTF_8.decode(v)))
+                .parseObject(new JsonParser(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8))));
+        assertEquals("a", simple.foo);
+        assertEquals(2, simple.bar, 0);
+        assertEquals(Arrays.asList("ext={\"k\": [1, \"}\"]}", "unknown=[true, {\"x\": null}]", "other=\"s\\\"\""), raw);
+
+        List<String> missing = new ArrayList<>();
+        new JsonObjectBuilder<>(() -> new Simple())
+                .missingElementHandler((o, label, v) -> missing.add(label + "=" + v))
+                .parseObject(new JsonParser(json.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(Arrays.asList("foo=a", "ext={\"k\": [1, \"}\"]}", "bar=2.0", "unknown=[true, {\"x\": null}]", "other=s\""), missing);
+    }
+
+    private static class Series {
+
+        double[] values;
+        long[] times;
+        int[] counts;
+        double[][] matrix;
+        double[] flat;
+        int[] shape;
+    }
+
+    @Test
+    public void testPrimitiveArrays() throws Exception {
+        System.out.println("JsonObjectBuilderNG Test::primitiveArrays");
+        JsonObjectBuilder<Series> builder = new JsonObjectBuilder<>(() -> new Series())
+                .doubleArrayHandler("values", (o, v) -> o.values = v)
+                .longArrayHandler("times", (o, v) -> o.times = v)
+                .intArrayHandler("counts", (o, v) -> o.counts = v)
+                .doubleMatrixHandler("matrix", (o, v) -> o.matrix = v)
+                .shapedArrayHandler("cube", (o, v, shape) -> {
+                    o.flat = v;
+                    o.shape = shape;
+                });
+        StringBuilder times = new StringBuilder();
+        for (int idx = 0; idx < 100; idx++) {
+            times.append(idx > 0 ? ", " : "").append(1500000000000L + idx);
+        }
+        String json = "{\"values\": [1.5, -2, \"x\", [3], 4e2], \"times\": [" + times + "], \"counts\": null,"
+                + " \"matrix\": [[1, 2], [], 3, [4, 5, 6]], \"cube\": [[[1, 2], [3, 4]], [[5, 6], [7, 8]], [[9, 10], [11, 12]]]}";
+        Series s = builder.parseObject(new JsonParser(json.getBytes(StandardCharsets.UTF_8)));
+        assertArrayEquals(new double[]{1.5, -2, Double.NaN, Double.NaN, 400}, s.values, 0);
+        assertEquals(100, s.times.length);
+        assertEquals(1500000000099L, s.times[99]);
+        assertNull(s.counts);
+        assertEquals(4, s.matrix.length);
+        assertArrayEquals(new double[]{1, 2}, s.matrix[0], 0);
+        assertEquals(0, s.matrix[1].length);
+        assertNull(s.matrix[2]);
+        assertArrayEquals(new double[]{4, 5, 6}, s.matrix[3], 0);
+        assertArrayEquals(new int[]{3, 2, 2}, s.shape);
+        assertEquals(12, s.flat.length);
+        assertEquals(12, s.flat[11], 0);
+
+        s = builder.parseObject(new JsonParser("{\"counts\": [1, 2.9, -3], \"cube\": []}".getBytes(StandardCharsets.UTF_8)));
+        assertArrayEquals(new int[]{1, 2, -3}, s.counts);
+        assertArrayEquals(new int[]{0}, s.shape);
+        for (String ragged : new String[]{"[[1, 2], [3]]", "[[1], 2]", "[1, [2]]"}) {
+            try {
+                builder.parseObject(new JsonParser(("{\"cube\": " + ragged + "}").getBytes(StandardCharsets.UTF_8)));
+                fail(ragged);
+            } catch (JsonObjectBuilder.JsonObjectParserException e) {
+            }
+        }
+    }
+
+    private static class Catalog {
+
+        public JsonDoubleMap prices = new JsonDoubleMap();
+        public java.util.Map<String, Long> stock = new java.util.TreeMap<>();
+        public java.util.Map<String, String> labels = new java.util.HashMap<>();
+        public java.util.Map<String, SubTest> points = new java.util.LinkedHashMap<>();
+        public String name;
+    }
+
+    @Test
+    public void testMapHandlers() throws Exception {
+        System.out.println("JsonObjectBuilderNG Test::mapHandlers");
+        JsonObjectBuilder<SubTest> point = new JsonObjectBuilder<>(() -> new SubTest())
+                .doubleHandler("foo", (o, v) -> o.foo = v)
+                .doubleHandler("bar", (o, v) -> o.bar = v);
+        JsonObjectBuilder<Catalog> builder = new JsonObjectBuilder<>(() -> new Catalog())
+                .mapDoubleHandler("prices", (o, k, v) -> o.prices.put(k, v))
+                .mapLongHandler("stock", (o, k, v) -> o.stock.put(k, v))
+                .mapStringHandler("labels", (o, k, v) -> o.labels.put(k, v))
+                .mapHandler("points", point, (o, k, v) -> o.points.put(k, v))
+                .stringHandler("name", (o, v) -> o.name = v);
+        StringBuilder prices = new StringBuilder();
+        for (int idx = 0; idx < 1000; idx++) {
+            prices.append(idx > 0 ? ", " : "").append("\"sku").append(idx).append("\": ").append(idx * 0.5);
+        }
+        String json = "{\"prices\": {" + prices + "}, \"stock\": {\"a\": 9007199254740993, \"b\": \"x\", \"c\": [1], \"d\": -4},"
+                + " \"labels\": {\"en\": \"Hello\", \"fr\": null, \"n\": 1}, \"points\": {\"p\": {\"foo\": 1, \"bar\": 2}, \"q\": null},"
+                + " \"name\": \"cat\"}";
+        Catalog c = builder.parseObject(new JsonParser(json.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(1000, c.prices.size());
+        assertEquals(499.5, c.prices.get("sku999", -1), 0);
+        assertEquals(-1, c.prices.get("sku1000", -1), 0);
+        assertTrue(c.prices.containsKey("sku0"));
+        assertEquals("{a=9007199254740993, d=-4}", c.stock.toString());
+        assertEquals("Hello", c.labels.get("en"));
+        assertTrue(c.labels.containsKey("fr"));
+        assertNull(c.labels.get("fr"));
+        assertFalse(c.labels.containsKey("n"));
+        assertEquals(2, c.points.get("p").bar, 0);
+        assertTrue(c.points.containsKey("q"));
+        assertNull(c.points.get("q"));
+        assertEquals("cat", c.name);
+
+        List<Catalog> list = new ArrayList<>();
+        builder.parseArrayOf(new JsonParser("[{\"prices\": {}}, {\"prices\": null, \"name\": \"x\"}]".getBytes(StandardCharsets.UTF_8)), list::add);
+        assertEquals(2, list.size());
+        assertTrue(list.get(0).prices.isEmpty());
+        assertEquals("x", list.get(1).name);
+
+        assertFalse(point.isCompiled());
+        builder.compile();
+        assertTrue(point.isCompiled());
+        try {
+            point.stringHandler("label", (o, v) -> {
+            });
+            fail("map value builder was not compiled");
+        } catch (IllegalStateException e) {
+        }
+    }
+
     private static class TestClass {
 
         public double foo;
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2018 Nicholas Folse <https://github.com/NF1198>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tauterra.jsonstreamer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.tauterra.jsonstreamer.JsonObjectBuilder.JsonObjectParserException;
+
+/**
+ *
+ * @author Nicholas Folse <https://github.com/NF1198>
+ */
+public class JsonParallelReaderTest {
+
+    public JsonParallelReaderTest() {
+    }
+
+    private static class Point {
+
+        long id;
+        double x;
+        String label;
+    }
+
+    final static JsonObjectBuilder<Point> pointBuilder = new JsonObjectBuilder<>(() -> new Point())
+            .numberHandler("id", (o, v) -> o.id = v.longValue())
+            .numberHandler("x", (o, v) -> o.x = v)
+            .stringHandler("label", (o, v) -> o.label = v);
+
+    final static int COUNT = 20000;
+
+    private static byte[] points() {
+        StringBuilder sb = new StringBuilder(" [\n");
+        for (int idx = 0; idx < COUNT; idx++) {
+            sb.append(idx > 0 ? ",\n" : "").append("{\"id\": ").append(idx).append(", \"x\": ").append(idx * 0.5)
+                    .append(", \"label\": \"p,[").append(idx).append("]\\\"\", \"extra\": {\"a\": [1, {\"b\": \"}\"}]}}");
+        }
+        sb.append("\n]\n");
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testOrdered() throws Exception {
+        System.out.println("JsonParallelReader Test::ordered");
+        List<Point> points = new ArrayList<>();
+        new JsonParallelReader<>(pointBuilder)
+                .pool(new ForkJoinPool(4))
+                .batchSize(4096)
+                .parseArrayOf(points(), points::add);
+        assertEquals(COUNT, points.size());
+        for (int idx = 0; idx < COUNT; idx++) {
+            assertEquals(idx, points.get(idx).id);
+            assertEquals(idx * 0.5, points.get(idx).x, 0);
+            assertEquals("p,[" + idx + "]\"", points.get(idx).label);
+        }
+    }
+
+    @Test
+    public void testUnorderedMapped() throws Exception {
+        System.out.println("JsonParallelReader Test::unorderedMapped");
+        byte[] bytes = points();
+        Path file = Files.createTempFile("JsonParallelReaderTest", ".json");
+        try {
+            Files.write(file, bytes);
+            List<Long> ids = new ArrayList<>();
+            new JsonParallelReader<>(pointBuilder)
+                    .ordered(false)
+                    .batchSize(10000)
+                    .parseArrayOf(file, p -> ids.add(p.id));
+            Collections.sort(ids);
+            assertEquals(COUNT, ids.size());
+            for (int idx = 0; idx < COUNT; idx++) {
+                assertEquals(idx, (long) ids.get(idx));
+            }
+        } finally {
+            Files.delete(file);
+        }
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).flip();
+        List<Point> points = new ArrayList<>();
+        new JsonParallelReader<>(pointBuilder).batchSize(1).parseArrayOf(direct, points::add);
+        assertEquals(COUNT, points.size());
+        assertEquals(COUNT - 1, points.get(COUNT - 1).id);
+    }
+
+    @Test
+    public void testEmptyAndMixedArrays() throws Exception {
+        System.out.println("JsonParallelReader Test::emptyAndMixedArrays");
+        List<Point> points = new ArrayList<>();
+        new JsonParallelReader<>(pointBuilder).parseArrayOf("[]".getBytes(StandardCharsets.UTF_8), points::add);
+        assertTrue(points.isEmpty());
+        new JsonParallelReader<>(pointBuilder).batchSize(1)
+                .parseArrayOf("[{\"id\": 1}, 2, [3], null, {\"id\": 5}]".getBytes(StandardCharsets.UTF_8), points::add);
+        assertEquals(5, points.size());
+        assertEquals(1, points.get(0).id);
+        assertNull(points.get(1));
+        assertNull(points.get(2));
+        assertNull(points.get(3));
+        assertEquals(5, points.get(4).id);
+    }
+
+    @Test
+    public void testTrailingData() throws Exception {
+        System.out.println("JsonParallelReader Test::trailingData");
+        StringBuilder sb = new StringBuilder("[");
+        for (int idx = 0; idx < 100; idx++) {
+            sb.append(idx > 0 ? ", " : "").append("{\"id\": ").append(idx).append("}");
+        }
+        String large = sb.append("]").toString();
+        for (String text : new String[]{"[{}] xyz", "[{}]]", "[{}],", large + " {}", large + "\n]"}) {
+            try {
+                new JsonParallelReader<>(pointBuilder).batchSize(16).parseArrayOf(text.getBytes(StandardCharsets.UTF_8), p -> {
+                });
+                fail(text);
+            } catch (JsonObjectParserException e) {
+            }
+        }
+        List<Point> points = new ArrayList<>();
+        new JsonParallelReader<>(pointBuilder).parseArrayOf((large + " \r\n\t").getBytes(StandardCharsets.UTF_8), points::add);
+        assertEquals(100, points.size());
+    }
+
+    @Test(expected = JsonObjectParserException.class)
+    public void testNotAnArray() throws Exception {
+        System.out.println("JsonParallelReader Test::notAnArray");
+        new JsonParallelReader<>(pointBuilder).parseArrayOf("{\"id\": 1}".getBytes(StandardCharsets.UTF_8), p -> {
+        });
+    }
+
+}
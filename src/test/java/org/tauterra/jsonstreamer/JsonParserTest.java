@@ -7,6 +7,16 @@ package org.tauterra.jsonstreamer;
 
 import java.io.ByteArrayInputStream;
 import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.Assert.*;
 import org.junit.Test;
 import org.tauterra.jsonstreamer.JsonParser.Event;
 
@@ -56,4 +66,304 @@ public class JsonParserTest {
         }
     }
 
+    @Test
+    public void testStringDecoding() throws Exception {
+        System.out.println("JsonParserNG Test::stringDecoding");
+        String text = "{\"k\\u00e9y\": \"tab\\there \\\"quoted\\\" \u00fcml\u00e4ut \\ud83d\\ude00\"}";
+        JsonParser instance = new JsonParser(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(Event.START_OBJECT, instance.next());
+        assertEquals(Event.KEY_NAME, instance.next());
+        assertEquals("k\u00e9y", instance.sval());
+        assertEquals(Event.VALUE_STRING, instance.next());
+        assertEquals("tab\there \"quoted\" \u00fcml\u00e4ut \ud83d\ude00", instance.sval());
+        assertEquals(Event.END_OBJECT, instance.next());
+        assertFalse(instance.hasNext());
+    }
+
+    @Test
+    public void testNumbersAndWords() throws Exception {
+        System.out.println("JsonParserNG Test::numbersAndWords");
+        String text = "[0, -12, 3.25, 1.5e3, -2E-2, true, FALSE, null, NaN]";
+        JsonParser instance = new JsonParser(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(Event.START_ARRAY, instance.next());
+        double[] expected = {0, -12, 3.25, 1500, -0.02};
+        for (double value : expected) {
+            assertEquals(Event.VALUE_NUMBER, instance.next());
+            assertEquals(value, instance.nval(), 1e-12);
+        }
+        assertEquals(Event.VALUE_TRUE, instance.next());
+        assertEquals(Event.VALUE_FALSE, instance.next());
+        assertEquals(Event.VALUE_NULL, instance.next());
+        assertEquals(Event.VALUE_NULL, instance.next());
+        assertEquals(Event.END_ARRAY, instance.next());
+    }
+
+    @Test
+    public void testExactNumbers() throws Exception {
+        System.out.println("JsonParserNG Test::exactNumbers");
+        String[] literals = {"9007199254740993", "-9223372036854775808", "9223372036854775807",
+            "0.1", "123456.789e-3", "1.7976931348623157e308", "4.9e-324", "12345678901234567890123",
+            "0.30000000000000004", "-0.0", "2.5E+10", "1e22", "1e23"};
+        StringBuilder sb = new StringBuilder("[");
+        for (String literal : literals) {
+            sb.append(literal).append(',');
+        }
+        sb.append("]");
+        JsonParser instance = new JsonParser(sb.toString().getBytes(StandardCharsets.UTF_8));
+        assertEquals(Event.START_ARRAY, instance.next());
+        for (String literal : literals) {
+            assertEquals(Event.VALUE_NUMBER, instance.next());
+            assertEquals(literal, Double.doubleToRawLongBits(Double.parseDouble(literal)), Double.doubleToRawLongBits(instance.doubleValue()));
+            boolean integral = literal.indexOf('.') < 0 && literal.indexOf('e') < 0 && literal.indexOf('E') < 0;
+            assertEquals(literal, integral, instance.isIntegral());
+        }
+        assertEquals(Event.END_ARRAY, instance.next());
+
+        instance = new JsonParser("[9007199254740993, -9223372036854775808, 9223372036854775807, 42.9]".getBytes(StandardCharsets.UTF_8));
+        instance.next();
+        instance.next();
+        assertEquals(9007199254740993L, instance.longValue());
+        instance.next();
+        assertEquals(Long.MIN_VALUE, instance.longValue());
+        instance.next();
+        assertEquals(Long.MAX_VALUE, instance.longValue());
+        instance.next();
+        assertEquals(42L, instance.longValue());
+        assertFalse(instance.isIntegral());
+    }
+
+    @Test
+    public void testPushBack() throws Exception {
+        System.out.println("JsonParserNG Test::pushBack");
+        JsonParser instance = new JsonParser("{\"a\": {\"b\": [1]}, \"c\": \"d\"} \"top\" 7".getBytes(StandardCharsets.UTF_8));
+        assertEquals(Event.START_OBJECT, instance.next());
+        assertEquals(Event.KEY_NAME, instance.next());
+        instance.pushBack();
+        assertEquals(Event.KEY_NAME, instance.next());
+        assertEquals("a", instance.sval());
+        assertEquals(Event.START_OBJECT, instance.next());
+        assertEquals(Event.KEY_NAME, instance.next());
+        assertEquals(Event.START_ARRAY, instance.next());
+        assertEquals(Event.VALUE_NUMBER, instance.next());
+        assertEquals(Event.END_ARRAY, instance.next());
+        instance.pushBack();
+        assertEquals(Event.END_ARRAY, instance.next());
+        assertEquals(Event.END_OBJECT, instance.next());
+        instance.pushBack();
+        assertEquals(Event.END_OBJECT, instance.next());
+        assertEquals(Event.KEY_NAME, instance.next());
+        assertEquals("c", instance.sval());
+        assertEquals(Event.VALUE_STRING, instance.next());
+        instance.pushBack();
+        assertEquals(Event.VALUE_STRING, instance.next());
+        assertEquals("d", instance.sval());
+        assertEquals(Event.END_OBJECT, instance.next());
+        assertEquals(Event.VALUE_STRING, instance.next());
+        assertEquals("top", instance.sval());
+        assertEquals(Event.VALUE_NUMBER, instance.next());
+        assertEquals(7L, instance.longValue());
+        assertFalse(instance.hasNext());
+    }
+
+    @Test
+    public void testSkipValue() throws Exception {
+        System.out.println("JsonParserNG Test::skipValue");
+        String text = "{\"blob\": {\"a\": [1, {\"b\": \"}]\\\"{[\"}], \"c\": \"\\\\\"}, \"list\": [[1], [2, [3]]], \"s\": \"x\", \"n\": 5, \"after\": true}";
+        JsonParser instance = new JsonParser(text.getBytes(StandardCharsets.UTF_8));
+        assertEquals(Event.START_OBJECT, instance.next());
+        assertEquals(Event.KEY_NAME, instance.next());
+        assertEquals(Event.START_OBJECT, instance.skipValue());
+        assertEquals(Event.END_OBJECT, instance.currentEvent());
+        assertEquals(Event.KEY_NAME, instance.next());
+        assertEquals("list", instance.sval());
+        assertEquals(Event.START_ARRAY, instance.next());
+        instance.pushBack();
+        assertEquals(Event.START_ARRAY, instance.skipValue());
+        assertEquals(Event.KEY_NAME, instance.next());
+        assertEquals(Event.VALUE_STRING, instance.skipValue());
+        assertEquals(Event.KEY_NAME, instance.next());
+        assertEquals(Event.VALUE_NUMBER, instance.skipValue());
+        assertEquals(Event.KEY_NAME, instance.next());
+        assertEquals("after", instance.sval());
+        assertEquals(Event.VALUE_TRUE, instance.next());
+        assertEquals(Event.END_OBJECT, instance.next());
+        assertFalse(instance.hasNext());
+    }
+
+    @Test
+    public void testBufferBoundaries() throws Exception {
+        System.out.println("JsonParserNG Test::bufferBoundaries");
+        StringBuilder sb = new StringBuilder("[");
+        for (int idx = 0; idx < 2000; idx++) {
+            sb.append(idx > 0 ? ", " : "").append("\"value-").append(idx).append("\", ").append(idx);
+        }
+        sb.append("]");
+        JsonParser instance = new JsonParser(new ByteArrayInputStream(sb.toString().getBytes(StandardCharsets.UTF_8)));
+        assertEquals(Event.START_ARRAY, instance.next());
+        for (int idx = 0; idx < 2000; idx++) {
+            assertEquals(Event.VALUE_STRING, instance.next());
+            assertEquals("value-" + idx, instance.sval());
+            assertEquals(Event.VALUE_NUMBER, instance.next());
+            assertEquals(idx, instance.nval(), 0);
+        }
+        assertEquals(Event.END_ARRAY, instance.next());
+        assertFalse(instance.hasNext());
+    }
+
+    @Test
+    public void testBufferInputs() throws Exception {
+        System.out.println("JsonParserNG Test::bufferInputs");
+        byte[] bytes = ("  " + json + "  ").getBytes(StandardCharsets.UTF_8);
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).flip();
+        assertEquals(countEvents(new JsonParser(new ByteArrayInputStream(bytes))), countEvents(new JsonParser(bytes, 2, bytes.length - 4)));
+        assertEquals(countEvents(new JsonParser(bytes)), countEvents(new JsonParser(direct)));
+        assertEquals(bytes.length, direct.remaining());
+    }
+
+    @Test
+    public void testMappedWindows() throws Exception {
+        System.out.println("JsonParserNG Test::mappedWindows");
+        Path file = Files.createTempFile("JsonParserTest", ".json");
+        try {
+            Files.write(file, json.getBytes(StandardCharsets.UTF_8));
+            int expected = countEvents(new JsonParser(json.getBytes(StandardCharsets.UTF_8)));
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                JsonScanner.MappedInput input = new JsonScanner.MappedInput(channel, 0, channel.size(), 7);
+                assertEquals(expected, countEvents(new JsonParser(new JsonScanner(input, 16))));
+            }
+            try (JsonParser parser = JsonParser.open(file)) {
+                assertEquals(expected, countEvents(parser));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testStructuralIndex() throws Exception {
+        System.out.println("JsonParserNG Test::structuralIndex");
+        StringBuilder sb = new StringBuilder("{\"blob\": [");
+        for (int idx = 0; idx < 200; idx++) {
+            sb.append(idx > 0 ? ", " : "").append("{\"k").append(idx).append("\": \"");
+            for (int n = 0; n < idx % 7; n++) {
+                sb.append('\\');
+            }
+            sb.append(idx % 7 % 2 == 0 ? "" : "\\").append("x]}\\\"{").append("\", \"n\": [-1.5e3, true, null]}\n");
+        }
+        sb.append("], \"after\": 1}");
+        byte[] data = sb.toString().getBytes(StandardCharsets.UTF_8);
+
+        // reference: offsets of brackets, commas and colons outside of strings, plus value starts
+        int[] expected = new int[data.length];
+        int count = 0;
+        boolean inString = false;
+        boolean prevPlain = false;
+        for (int idx = 0; idx < data.length; idx++) {
+            byte b = data[idx];
+            if (inString) {
+                if (b == '\\') {
+                    idx++;
+                } else if (b == '"') {
+                    inString = false;
+                }
+                prevPlain = false;
+                continue;
+            }
+            boolean op = "{}[],:".indexOf(b) >= 0;
+            boolean ws = " \t\r\n".indexOf(b) >= 0;
+            if (op || (!ws && !prevPlain)) {
+                expected[count++] = idx;
+            }
+            inString = b == '"';
+            prevPlain = !op && !ws && !inString;
+        }
+        JsonStructuralIndex index = new JsonStructuralIndex();
+        for (int round = 0; round < 2; round++) {
+            assertEquals(count, index.index(data, 0, data.length));
+            assertArrayEquals(Arrays.copyOf(expected, count), Arrays.copyOf(index.tape(), count));
+        }
+
+        for (int size : new int[]{16, 100, 4096}) {
+            JsonParser instance = new JsonParser(new JsonScanner(new ByteArrayInputStream(data)::read, size));
+            assertEquals(Event.START_OBJECT, instance.next());
+            assertEquals(Event.KEY_NAME, instance.next());
+            assertEquals(Event.START_ARRAY, instance.skipValue());
+            assertEquals(Event.KEY_NAME, instance.next());
+            assertEquals("after", instance.sval());
+            assertEquals(201, instance.line());
+            assertEquals(Event.VALUE_NUMBER, instance.next());
+            assertEquals(Event.END_OBJECT, instance.next());
+        }
+    }
+
+    @Test
+    public void testReset() throws Exception {
+        System.out.println("JsonParserNG Test::reset");
+        byte[] data = json.getBytes(StandardCharsets.UTF_8);
+        int expected = countEvents(new JsonParser(data));
+        JsonParser instance = new JsonParser(new ByteArrayInputStream(data));
+        assertEquals(Event.START_OBJECT, instance.next());
+        assertEquals(Event.KEY_NAME, instance.next());
+        instance.reset(new ByteArrayInputStream(data));
+        assertNull(instance.currentEvent());
+        assertEquals(expected, countEvents(instance));
+        instance.reset(data);
+        assertEquals(expected, countEvents(instance));
+        instance.reset(new ByteArrayInputStream("[1, \"two\"]".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(Event.START_ARRAY, instance.next());
+        assertEquals(Event.VALUE_NUMBER, instance.next());
+        assertEquals(1, instance.longValue());
+        assertEquals(Event.VALUE_STRING, instance.next());
+        assertEquals("two", instance.sval());
+        assertEquals(Event.END_ARRAY, instance.next());
+        assertFalse(instance.hasNext());
+
+        JsonParser nonBlocking = JsonParser.nonBlocking();
+        nonBlocking.feed(ByteBuffer.wrap("{\"a\"".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(Event.START_OBJECT, nonBlocking.next());
+        nonBlocking.reset(new ByteArrayInputStream(data));
+        assertEquals(expected, countEvents(nonBlocking));
+    }
+
+    @Test
+    public void testParserPool() throws Exception {
+        System.out.println("JsonParserNG Test::parserPool");
+        byte[] data = json.getBytes(StandardCharsets.UTF_8);
+        int expected = countEvents(new JsonParser(data));
+        JsonParserPool pool = new JsonParserPool(2);
+        JsonParser first = pool.acquire(new ByteArrayInputStream(data));
+        JsonParser second = pool.acquire(data, 0, data.length);
+        JsonParser third = pool.acquire(new ByteArrayInputStream(data));
+        assertEquals(expected, countEvents(first));
+        assertEquals(expected, countEvents(second));
+        pool.release(first);
+        pool.release(second);
+        pool.release(third);
+        assertEquals(2, pool.idleCount());
+        JsonParser recycled = pool.acquire(new ByteArrayInputStream(data));
+        assertTrue(recycled == first || recycled == second);
+        assertEquals(expected, countEvents(recycled));
+        pool.release(recycled);
+
+        JsonObjectBuilder<List<String>> keys = new JsonObjectBuilder<List<String>>(() -> new ArrayList<>())
+                .stringHandler("foo", (o, v) -> o.add(v));
+        for (int idx = 0; idx < 3; idx++) {
+            assertEquals(Arrays.asList("afoo"), pool.parseObject(new ByteArrayInputStream(data), keys));
+        }
+        assertEquals(2, pool.idleCount());
+    }
+
+    private static int countEvents(JsonParser parser) throws Exception {
+        int count = 0;
+        while (parser.hasNext()) {
+            Event event = parser.next();
+            if (event == Event.KEY_NAME || event == Event.VALUE_STRING) {
+                assertNotNull(parser.sval());
+            }
+            count++;
+        }
+        return count;
+    }
+
 }
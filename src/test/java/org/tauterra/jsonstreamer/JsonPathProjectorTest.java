@@ -0,0 +1,119 @@
+/*
+ * Copyright 2018 Nicholas Folse <https://github.com/NF1198>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tauterra.jsonstreamer;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Nicholas Folse <https://github.com/NF1198>
+ */
+public class JsonPathProjectorTest {
+
+    public JsonPathProjectorTest() {
+    }
+
+    final static String json = "{\"meta\": {\"count\": 3, \"tags\": [\"a\", \"b\"], \"a/b\": true, \"next\": null},"
+            + " \"blob\": {\"deep\": [[1, 2, {\"id\": \"}]\"}], {\"x\": [true]}]},"
+            + " \"items\": [{\"id\": 7, \"name\": \"seven\", \"spec\": {\"w\": 1}},"
+            + " {\"id\": 8, \"name\": \"eight\", \"spec\": {\"w\": 2}},"
+            + " {\"id\": 9, \"name\": \"nine\", \"spec\": {\"w\": 3}}],"
+            + " \"count\": -1}";
+
+    private static class Summary {
+
+        Double count;
+        String secondTag;
+        Boolean slash;
+        boolean nextSeen;
+        List<Double> ids = new ArrayList<>();
+        String firstName;
+        List<Spec> specs = new ArrayList<>();
+    }
+
+    private static class Spec {
+
+        double w;
+    }
+
+    @Test
+    public void testProjection() throws Exception {
+        System.out.println("JsonPathProjector Test::projection");
+        JsonObjectBuilder<Spec> specBuilder = new JsonObjectBuilder<>(() -> new Spec())
+                .numberHandler("w", (o, v) -> o.w = v);
+        JsonPathProjector<Summary> projector = new JsonPathProjector<>(() -> new Summary())
+                .numberHandler("/meta/count", (o, v) -> o.count = v)
+                .stringHandler("meta.tags.1", (o, v) -> o.secondTag = v)
+                .booleanHandler("/meta/a~1b", (o, v) -> o.slash = v)
+                .stringHandler("meta.next", (o, v) -> o.nextSeen = v == null)
+                .numberHandler("items.*.id", (o, v) -> o.ids.add(v))
+                .stringHandler("/items/0/name", (o, v) -> o.firstName = v)
+                .objectHandler("items.*.spec", specBuilder, (o, v) -> o.specs.add(v));
+
+        JsonParser parser = new JsonParser(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+        Summary summary = projector.parse(parser);
+        assertFalse(parser.hasNext());
+        assertEquals(3d, summary.count, 0);
+        assertEquals("b", summary.secondTag);
+        assertTrue(summary.slash);
+        assertTrue(summary.nextSeen);
+        assertEquals(Arrays.asList(7d, 8d, 9d), summary.ids);
+        assertEquals("seven", summary.firstName);
+        assertEquals(3, summary.specs.size());
+        assertEquals(3d, summary.specs.get(2).w, 0);
+    }
+
+    @Test
+    public void testTopLevelArray() throws Exception {
+        System.out.println("JsonPathProjector Test::topLevelArray");
+        List<String> names = new ArrayList<>();
+        JsonPathProjector<List<String>> projector = new JsonPathProjector<List<String>>(() -> names)
+                .stringHandler("*.name", (o, v) -> o.add(v))
+                .stringHandler("1.alias", (o, v) -> o.add("alias:" + v));
+        JsonParser parser = new JsonParser("[{\"name\": \"a\"}, {\"alias\": \"b2\", \"name\": \"b\"}, 3, {\"other\": {\"name\": \"x\"}}]"
+                .getBytes(StandardCharsets.UTF_8));
+        projector.parse(parser);
+        assertEquals(Arrays.asList("a", "alias:b2", "b"), names);
+    }
+
+    @Test
+    public void testNumericKeys() throws Exception {
+        System.out.println("JsonPathProjector Test::numericKeys");
+        List<String> values = new ArrayList<>();
+        JsonPathProjector<List<String>> projector = new JsonPathProjector<List<String>>(() -> values)
+                .stringHandler("byId.999999999", (o, v) -> o.add("id:" + v))
+                .stringHandler("years.2024", (o, v) -> o.add("year:" + v))
+                .stringHandler("list.2", (o, v) -> o.add("list:" + v));
+        JsonParser parser = new JsonParser(("{\"byId\": {\"1\": \"a\", \"999999999\": \"b\"}, \"years\": [\"x\"],"
+                + " \"list\": [\"p\", \"q\", \"r\"]}").getBytes(StandardCharsets.UTF_8));
+        projector.parse(parser);
+        assertEquals(Arrays.asList("id:b", "list:r"), values);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptyPath() throws Exception {
+        System.out.println("JsonPathProjector Test::emptyPath");
+        new JsonPathProjector<Object>(() -> null).stringHandler("", (o, v) -> {
+        });
+    }
+
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2018 Nicholas Folse <https://github.com/NF1198>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tauterra.jsonstreamer;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.tauterra.jsonstreamer.JsonObjectBuilder.JsonObjectParserException;
+
+/**
+ *
+ * @author Nicholas Folse <https://github.com/NF1198>
+ */
+public class JsonPipelineReaderTest {
+
+    public JsonPipelineReaderTest() {
+    }
+
+    private static class Point {
+
+        long id;
+        String label;
+    }
+
+    final static JsonObjectBuilder<Point> pointBuilder = new JsonObjectBuilder<>(() -> new Point())
+            .numberHandler("id", (o, v) -> o.id = v.longValue())
+            .stringHandler("label", (o, v) -> o.label = v);
+
+    final static int COUNT = 10000;
+
+    private static JsonParser points() {
+        StringBuilder sb = new StringBuilder("[\n");
+        for (int idx = 0; idx < COUNT; idx++) {
+            sb.append(idx > 0 ? ",\n" : "").append("{\"id\": ").append(idx)
+                    .append(", \"label\": \"p,[").append(idx).append("]\\\"\", \"extra\": [1, {\"b\": \"}\"}]}");
+        }
+        sb.append("\n]\n");
+        return new JsonParser(new ByteArrayInputStream(sb.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void testOrdered() throws Exception {
+        System.out.println("JsonPipelineReader Test::ordered");
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            List<Point> points = new ArrayList<>();
+            new JsonPipelineReader<>(pointBuilder)
+                    .executor(executor)
+                    .queueCapacity(2)
+                    .batchSize(1024)
+                    .parseArrayOf(points(), points::add);
+            assertEquals(COUNT, points.size());
+            for (int idx = 0; idx < COUNT; idx++) {
+                assertEquals(idx, points.get(idx).id);
+                assertEquals("p,[" + idx + "]\"", points.get(idx).label);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testUnorderedAndMixed() throws Exception {
+        System.out.println("JsonPipelineReader Test::unorderedAndMixed");
+        List<Long> ids = new ArrayList<>();
+        new JsonPipelineReader<>(pointBuilder)
+                .ordered(false)
+                .batchSize(100)
+                .parseArrayOf(points(), p -> ids.add(p.id));
+        Collections.sort(ids);
+        assertEquals(COUNT, ids.size());
+        for (int idx = 0; idx < COUNT; idx++) {
+            assertEquals(idx, (long) ids.get(idx));
+        }
+
+        List<Point> points = new ArrayList<>();
+        new JsonPipelineReader<>(pointBuilder).batchSize(1)
+                .parseArrayOf(new JsonParser("[{\"id\": 1}, 2, 3, [4], null, {\"id\": 6}]".getBytes(StandardCharsets.UTF_8)), points::add);
+        assertEquals(6, points.size());
+        assertEquals(1, points.get(0).id);
+        assertNull(points.get(1));
+        assertNull(points.get(2));
+        assertNull(points.get(3));
+        assertNull(points.get(4));
+        assertEquals(6, points.get(5).id);
+    }
+
+    @Test(expected = JsonObjectParserException.class)
+    public void testUnterminated() throws Exception {
+        System.out.println("JsonPipelineReader Test::unterminated");
+        new JsonPipelineReader<>(pointBuilder).parseArrayOf(new JsonParser("[{\"id\": 1}, {\"id\": 2}".getBytes(StandardCharsets.UTF_8)), p -> {
+        });
+    }
+
+}
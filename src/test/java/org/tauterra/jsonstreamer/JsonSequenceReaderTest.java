@@ -0,0 +1,134 @@
+/*
+ * Copyright 2018 Nicholas Folse <https://github.com/NF1198>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tauterra.jsonstreamer;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.tauterra.jsonstreamer.JsonObjectBuilder.JsonObjectParserException;
+
+/**
+ *
+ * @author Nicholas Folse <https://github.com/NF1198>
+ */
+public class JsonSequenceReaderTest {
+
+    public JsonSequenceReaderTest() {
+    }
+
+    private static class Record {
+
+        long id;
+        String level;
+    }
+
+    final static JsonObjectBuilder<Record> recordBuilder = new JsonObjectBuilder<>(() -> new Record())
+            .numberHandler("id", (o, v) -> o.id = v.longValue())
+            .stringHandler("level", (o, v) -> o.level = v);
+
+    private static JsonParser parser(String text) {
+        return new JsonParser(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void testNdjson() throws Exception {
+        System.out.println("JsonSequenceReader Test::ndjson");
+        StringBuilder sb = new StringBuilder();
+        for (int idx = 0; idx < 10000; idx++) {
+            sb.append("{\"id\": ").append(idx).append(", \"level\": \"").append(idx % 2 == 0 ? "INFO" : "WARN").append("\"}\n");
+        }
+        JsonSequenceReader<Record> reader = new JsonSequenceReader<>(recordBuilder, parser(sb.toString()))
+                .lineDelimited(true);
+        List<Record> records = new ArrayList<>();
+        reader.forEach(records::add);
+        assertEquals(10000, records.size());
+        assertEquals(10000, reader.recordCount());
+        assertEquals(9999, records.get(9999).id);
+        assertEquals("WARN", records.get(9999).level);
+    }
+
+    @Test
+    public void testSkipMalformedLines() throws Exception {
+        System.out.println("JsonSequenceReader Test::skipMalformedLines");
+        String text = "{\"id\": 1, \"level\": \"INFO\"}\r\n"
+                + "{\"id\": 2, \"level\": \n"
+                + "\n"
+                + "[1, 2]\n"
+                + "{\"id\": 3} trailing\n"
+                + "{\"id\": 4, \"level\": @}\n"
+                + "{\"id\": 5, \"level\": \"DEBUG\"}";
+        List<Long> malformedLines = new ArrayList<>();
+        JsonSequenceReader<Record> reader = new JsonSequenceReader<>(recordBuilder, parser(text))
+                .lineDelimited(true)
+                .skipMalformed(true)
+                .malformedHandler((line, e) -> malformedLines.add(line));
+        Iterator<Record> iterator = reader.iterator();
+        assertEquals(1, iterator.next().id);
+        Record last = iterator.next();
+        assertEquals(5, last.id);
+        assertEquals("DEBUG", last.level);
+        assertFalse(iterator.hasNext());
+        assertEquals(2, reader.recordCount());
+        assertEquals(4, reader.skippedCount());
+        assertEquals("[2, 4, 5, 6]", malformedLines.toString());
+    }
+
+    @Test(expected = JsonObjectParserException.class)
+    public void testMalformedLineFails() throws Exception {
+        System.out.println("JsonSequenceReader Test::malformedLineFails");
+        JsonSequenceReader<Record> reader = new JsonSequenceReader<>(recordBuilder, parser("{\"id\": 1}\n{\"id\": \n{\"id\": 3}\n"))
+                .lineDelimited(true);
+        reader.forEach(r -> {
+        });
+    }
+
+    @Test
+    public void testConcatenatedDocuments() throws Exception {
+        System.out.println("JsonSequenceReader Test::concatenatedDocuments");
+        String text = "{\"id\": 1,\n \"level\": \"INFO\"}{\"id\": 2}\n  {\n\"id\": 3\n}\n";
+        JsonSequenceReader<Record> reader = new JsonSequenceReader<>(recordBuilder, parser(text));
+        List<Record> records = new ArrayList<>();
+        reader.forEach(records::add);
+        assertEquals(3, records.size());
+        assertEquals("INFO", records.get(0).level);
+        assertEquals(3, records.get(2).id);
+    }
+
+    @Test
+    public void testTruncatedDocument() throws Exception {
+        System.out.println("JsonSequenceReader Test::truncatedDocument");
+        String text = "{\"id\": 1}\n{\"id\": 2, \"b\": [1,";
+        JsonSequenceReader<Record> reader = new JsonSequenceReader<>(recordBuilder, parser(text));
+        assertEquals(1, reader.read().id);
+        try {
+            reader.read();
+            fail("truncated document was returned");
+        } catch (JsonObjectParserException e) {
+        }
+
+        reader = new JsonSequenceReader<>(recordBuilder, parser(text)).skipMalformed(true);
+        List<Record> records = new ArrayList<>();
+        reader.forEach(records::add);
+        assertEquals(1, records.size());
+        assertEquals(1, reader.recordCount());
+        assertEquals(1, reader.skippedCount());
+    }
+
+}
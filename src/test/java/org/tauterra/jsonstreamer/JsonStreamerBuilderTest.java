@@ -16,10 +16,16 @@
 package org.tauterra.jsonstreamer;
 
 import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
 import java.util.stream.DoubleStream;
 import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import static org.junit.Assert.*;
 import org.junit.Test;
 import org.tauterra.jsonstreamer.JsonStreamerBuilder.JsonStreamer;
 
@@ -60,6 +66,136 @@ public class JsonStreamerBuilderTest {
 
     }
 
+    @Test
+    public void testGoldenOutput() {
+        System.out.println("JsonStreamerBuilder Test::goldenOutput");
+        assertEquals(GOLDEN_COMPACT, stream(0));
+        assertEquals(GOLDEN_INDENTED, stream(2));
+    }
+
+    @Test
+    public void testFieldsAddedAfterBuild() {
+        System.out.println("JsonStreamerBuilder Test::fieldsAddedAfterBuild");
+        JsonStreamerBuilder<SubTest> builder = new JsonStreamerBuilder<SubTest>()
+                .intField("innerInt", (obj) -> obj.innerInt);
+        JsonStreamer<SubTest> streamer = builder.build();
+        builder.stringField("late", (obj) -> "x");
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        streamer.accept(new SubTest(5), os, 0);
+        assertEquals("{\"innerInt\":5}", new String(os.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    private static class Node {
+
+        int id;
+        long count;
+        double ratio;
+        float weight;
+        String name;
+        boolean on;
+        SubTest sub = new SubTest(7);
+        List<SubTest> subs = Arrays.asList(new SubTest(1), new SubTest(2));
+        Node next;
+    }
+
+    /**
+     * Streams a two-level {@link Node} chain; the formats are created under a
+     * fixed locale so the output does not depend on the environment.
+     */
+    static String stream(int indent) {
+        Locale locale = Locale.getDefault();
+        Locale.setDefault(Locale.US);
+        try {
+            JsonStreamer<Node> streamer = new JsonStreamerBuilder<Node>()
+                    .intField("id", (obj) -> obj.id)
+                    .longField("count", (obj) -> obj.count, "0")
+                    .doubleField("ratio", (obj) -> obj.ratio, "0.0##")
+                    .floatField("weight", (obj) -> obj.weight, "0.00")
+                    .stringField("name", (obj) -> obj.name)
+                    .booleanField("on", (obj) -> obj.on)
+                    .objectField("sub", (obj) -> obj.sub, SubTestStreamer)
+                    .intArrayField("ints", (obj) -> IntStream.of(obj.id, -obj.id), "0")
+                    .longArrayField("longs", (obj) -> LongStream.of(obj.id * 100L, 0), null)
+                    .doubleArrayField("doubles", (obj) -> DoubleStream.of(obj.ratio, 0.5), "0.0")
+                    .floatArrayField("floats", (obj) -> Stream.of(obj.weight), "0.0")
+                    .booleanArrayField("flags", (obj) -> Stream.of(obj.on, !obj.on))
+                    .stringArrayField("strings", (obj) -> Stream.of(obj.name, "x"))
+                    .stringArrayField("empty", (obj) -> Stream.empty())
+                    .objectArrayField("subs", (obj) -> obj.subs.stream(), SubTestStreamer)
+                    .recursiveField("next", (obj) -> obj.next)
+                    .build();
+            Node root = new Node();
+            root.id = 1;
+            root.count = 123456789012L;
+            root.ratio = 0.25;
+            root.weight = 1.5f;
+            root.name = "root";
+            root.on = true;
+            root.next = new Node();
+            root.next.id = 2;
+            root.next.ratio = -3;
+            root.next.subs = Arrays.asList();
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            streamer.accept(root, os, indent);
+            return new String(os.toByteArray(), StandardCharsets.UTF_8);
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+
+    // output of the streamer before fields were precompiled by build()
+    private static final String GOLDEN_COMPACT = "{\"id\":1,\"count\":123456789012,\"ratio\":0.25,\"weight\":1.50,\"name\":\"root\",\"on\":true,"
+            + "\"sub\":{\"innerInt\":7},\"ints\":[1,-1],\"longs\":[100,0],\"doubles\":[0.2,0.5],\"floats\":[1.5],"
+            + "\"flags\":[true,false],\"strings\":[\"root\",\"x\"],\"empty\":[],\"subs\":[{\"innerInt\":1},"
+            + "{\"innerInt\":2}],\"next\":{\"id\":2,\"count\":0,\"ratio\":-3.0,\"weight\":0.00,\"name\":null,"
+            + "\"on\":false,\"sub\":{\"innerInt\":7},\"ints\":[2,-2],\"longs\":[200,0],\"doubles\":[-3.0,0.5],"
+            + "\"floats\":[0.0],\"flags\":[false,true],\"strings\":[null,\"x\"],\"empty\":[],\"subs\":[],"
+            + "\"next\":null}}";
+
+    private static final String GOLDEN_INDENTED = "{\n"
+            + "  \"id\": 1,\n"
+            + "  \"count\": 123456789012,\n"
+            + "  \"ratio\": 0.25,\n"
+            + "  \"weight\": 1.50,\n"
+            + "  \"name\": \"root\",\n"
+            + "  \"on\": true,\n"
+            + "  \"sub\": {\n"
+            + "    \"innerInt\": 7\n"
+            + "  },\n"
+            + "  \"ints\": [1, -1],\n"
+            + "  \"longs\": [100, 0],\n"
+            + "  \"doubles\": [0.2, 0.5],\n"
+            + "  \"floats\": [1.5],\n"
+            + "  \"flags\": [true, false],\n"
+            + "  \"strings\": [\"root\", \"x\"],\n"
+            + "  \"empty\": [],\n"
+            + "  \"subs\": [{\n"
+            + "    \"innerInt\": 1\n"
+            + "    }, {\n"
+            + "    \"innerInt\": 2\n"
+            + "    }],\n"
+            + "  \"next\": {\n"
+            + "    \"id\": 2,\n"
+            + "    \"count\": 0,\n"
+            + "    \"ratio\": -3.0,\n"
+            + "    \"weight\": 0.00,\n"
+            + "    \"name\": null,\n"
+            + "    \"on\": false,\n"
+            + "    \"sub\": {\n"
+            + "      \"innerInt\": 7\n"
+            + "    },\n"
+            + "    \"ints\": [2, -2],\n"
+            + "    \"longs\": [200, 0],\n"
+            + "    \"doubles\": [-3.0, 0.5],\n"
+            + "    \"floats\": [0.0],\n"
+            + "    \"flags\": [false, true],\n"
+            + "    \"strings\": [null, \"x\"],\n"
+            + "    \"empty\": [],\n"
+            + "    \"subs\": [],\n"
+            + "    \"next\": null\n"
+            + "  }\n"
+            + "}";
+
     private static class SubTest {
 
         int innerInt;
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2018 Nicholas Folse <https://github.com/NF1198>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tauterra.jsonstreamer;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Nicholas Folse <https://github.com/NF1198>
+ */
+public class JsonTypeProcessorTest {
+
+    public JsonTypeProcessorTest() {
+    }
+
+    @JsonType
+    static class Point {
+
+        long id;
+        double x;
+        Float ratio;
+        Integer count;
+        boolean flag;
+        @JsonField("na\"me")
+        String label;
+        Point next;
+        @JsonField("line\nbreak\r\t\u0001\u00e9")
+        String control;
+        @JsonField(ignore = true)
+        String ignored;
+        List<String> unmapped;
+    }
+
+    private static JsonParser parser(String json) {
+        return new JsonParser(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testParse() throws Exception {
+        System.out.println("JsonTypeProcessor Test::parse");
+        Point p = JsonTypeProcessorTest_PointJson.parseObject(parser("{\"id\": 7, \"x\": 1.5, \"count\": null, \"flag\": true,"
+                + " \"na\\\"me\": \"a\\nb\", \"ignored\": \"x\", \"unmapped\": [1], \"extra\": {\"id\": 1},"
+                + " \"next\": {\"id\": 8, \"x\": \"wrong\", \"next\": null}}"));
+        assertEquals(7, p.id);
+        assertEquals(1.5, p.x, 0);
+        assertNull(p.count);
+        assertTrue(p.flag);
+        assertEquals("a\nb", p.label);
+        assertNull(p.ignored);
+        assertNull(p.unmapped);
+        assertEquals(8, p.next.id);
+        assertEquals(0, p.next.x, 0);
+        assertNull(p.next.next);
+        assertNull(p.control);
+
+        p = JsonTypeProcessorTest_PointJson.parseObject(parser("{\"line\\nbreak\\r\\t\\u0001\u00e9\": \"c\"}"));
+        assertEquals("c", p.control);
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        JsonTypeProcessorTest_PointJson.STREAMER.accept(p, os, 0);
+        assertEquals("c", JsonTypeProcessorTest_PointJson.parseObject(new JsonParser(os.toByteArray())).control);
+
+        List<Point> points = new ArrayList<>();
+        JsonTypeProcessorTest_PointJson.parseArrayOf(parser("[{\"id\": 1}, 2, {\"\\u0069d\": 3}]"), points::add);
+        assertEquals(3, points.size());
+        assertEquals(1, points.get(0).id);
+        assertNull(points.get(1));
+        assertEquals(3, points.get(2).id);
+    }
+
+    @Test
+    public void testBuilder() throws Exception {
+        System.out.println("JsonTypeProcessor Test::builder");
+        List<Point> points = new ArrayList<>();
+        JsonObjectBuilder<List<Point>> holder = new JsonObjectBuilder<List<Point>>(() -> points)
+                .objectHandler("point", JsonTypeProcessorTest_PointJson.BUILDER, (o, v) -> o.add(v))
+                .mapHandler("byName", JsonTypeProcessorTest_PointJson.BUILDER, (o, k, v) -> o.add(v));
+        holder.parseObject(parser("{\"point\": {\"id\": 1, \"next\": {\"id\": 2}}, \"byName\": {\"a\": {\"id\": 3}, \"b\": null}}"));
+        assertEquals(3, points.size());
+        assertEquals(2, points.get(0).next.id);
+        assertEquals(3, points.get(1).id);
+        assertNull(points.get(2));
+
+        JsonSequenceReader<Point> reader = new JsonSequenceReader<>(JsonTypeProcessorTest_PointJson.BUILDER, parser("{\"id\": 4}\n{\"id\": 5}\n"))
+                .lineDelimited(true);
+        assertEquals(4, reader.read().id);
+        assertEquals(5, reader.read().id);
+        assertNull(reader.read());
+        assertTrue(JsonTypeProcessorTest_PointJson.BUILDER.isCompiled());
+    }
+
+    @Test
+    public void testNonFinite() throws Exception {
+        System.out.println("JsonTypeProcessor Test::nonFinite");
+        Point p = new Point();
+        p.x = Double.NaN;
+        p.ratio = Float.NEGATIVE_INFINITY;
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        JsonTypeProcessorTest_PointJson.STREAMER.accept(p, os, 0);
+        String json = new String(os.toByteArray(), StandardCharsets.UTF_8);
+        assertTrue(json, json.contains("\"x\":null,\"ratio\":null,"));
+
+        p.ratio = 0.5f;
+        os.reset();
+        JsonTypeProcessorTest_PointJson.STREAMER.accept(p, os, 0);
+        Point copy = JsonTypeProcessorTest_PointJson.parseObject(new JsonParser(os.toByteArray()));
+        assertEquals(0, copy.x, 0);
+        assertEquals(0.5f, copy.ratio, 0);
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        System.out.println("JsonTypeProcessor Test::roundTrip");
+        Point p = new Point();
+        p.id = 3;
+        p.x = -0.25;
+        p.count = 12;
+        p.label = "q\"uote\\";
+        p.next = new Point();
+        p.next.id = 4;
+        for (int indent : new int[]{0, 2}) {
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            JsonTypeProcessorTest_PointJson.STREAMER.accept(p, os, indent);
+            Point copy = JsonTypeProcessorTest_PointJson.parseObject(new JsonParser(os.toByteArray()));
+            assertEquals(3, copy.id);
+            assertEquals(-0.25, copy.x, 0);
+            assertEquals(12, (int) copy.count);
+            assertFalse(copy.flag);
+            assertEquals("q\"uote\\", copy.label);
+            assertEquals(4, copy.next.id);
+            assertNull(copy.next.count);
+            assertNull(copy.next.next);
+        }
+    }
+
+}